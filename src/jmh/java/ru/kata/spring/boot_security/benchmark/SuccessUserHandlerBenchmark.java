@@ -0,0 +1,58 @@
+package ru.kata.spring.boot_security.benchmark;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.authority.AuthorityUtils;
+import ru.kata.spring.boot_security.configs.SuccessUserHandler;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Выбор страницы перенаправления после входа (построение множества ролей из authorities).
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SuccessUserHandlerBenchmark {
+
+    private SuccessUserHandler successUserHandler;
+
+    private MockHttpServletRequest request;
+
+    private Authentication admin;
+
+    private Authentication user;
+
+    @Setup
+    public void setUp() {
+        successUserHandler = new SuccessUserHandler(new SimpleMeterRegistry());
+        request = new MockHttpServletRequest("POST", "/login");
+        admin = new UsernamePasswordAuthenticationToken("admin@mail.ru", null,
+                AuthorityUtils.createAuthorityList("ROLE_ADMIN", "ROLE_USER"));
+        user = new UsernamePasswordAuthenticationToken("user@mail.ru", null,
+                AuthorityUtils.createAuthorityList("ROLE_USER"));
+    }
+
+    @Benchmark
+    public String adminRedirect() throws IOException {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        successUserHandler.onAuthenticationSuccess(request, response, admin);
+        return response.getRedirectedUrl();
+    }
+
+    @Benchmark
+    public String userRedirect() throws IOException {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        successUserHandler.onAuthenticationSuccess(request, response, user);
+        return response.getRedirectedUrl();
+    }
+
+}
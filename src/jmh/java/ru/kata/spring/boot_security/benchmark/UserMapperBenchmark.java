@@ -0,0 +1,66 @@
+package ru.kata.spring.boot_security.benchmark;
+
+import org.modelmapper.ModelMapper;
+import org.openjdk.jmh.annotations.*;
+import ru.kata.spring.boot_security.dto.RoleDto;
+import ru.kata.spring.boot_security.dto.UserDto;
+import ru.kata.spring.boot_security.model.Role;
+import ru.kata.spring.boot_security.model.User;
+import ru.kata.spring.boot_security.util.UserMapper;
+import ru.kata.spring.boot_security.util.UserMapperImpl;
+
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Преобразование UserDto в User и обратно: сгенерированный MapStruct UserMapper
+ * в сравнении с прежним отображением через ModelMapper (рефлексия).
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class UserMapperBenchmark {
+
+    private UserMapper userMapper;
+
+    private ModelMapper modelMapper;
+
+    private UserDto userDto;
+
+    private User user;
+
+    @Setup
+    public void setUp() {
+        userMapper = new UserMapperImpl();
+        modelMapper = new ModelMapper();
+        userDto = new UserDto(1L, "Ivan", "Ivanov", 30, "ivan@mail.ru", "password",
+                Set.of(new RoleDto("ADMIN"), new RoleDto("USER")));
+        user = new User("Ivan", "Ivanov", "ivan@mail.ru", 30, "$2a$10$hash");
+        user.setId(1L);
+        user.setRoles(Set.of(new Role("ROLE_ADMIN"), new Role("ROLE_USER")));
+    }
+
+    @Benchmark
+    public User toModel() {
+        return userMapper.toModel(userDto);
+    }
+
+    @Benchmark
+    public User toModelWithModelMapper() {
+        return modelMapper.map(userDto, User.class);
+    }
+
+    @Benchmark
+    public UserDto toDto() {
+        return userMapper.toDto(user);
+    }
+
+    @Benchmark
+    public UserDto toDtoWithModelMapper() {
+        return modelMapper.map(user, UserDto.class);
+    }
+
+}
@@ -0,0 +1,62 @@
+package ru.kata.spring.boot_security.benchmark;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+import ru.kata.spring.boot_security.model.Role;
+import ru.kata.spring.boot_security.model.User;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Сериализация User в JSON через Jackson: один пользователь и страница из 100 пользователей.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class UserSerializationBenchmark {
+
+    private static final int PAGE_SIZE = 100;
+
+    private ObjectMapper objectMapper;
+
+    private User user;
+
+    private List<User> page;
+
+    @Setup
+    public void setUp() {
+        objectMapper = new ObjectMapper();
+        Role admin = new Role("ROLE_ADMIN");
+        Role user = new Role("ROLE_USER");
+        this.user = newUser(1, admin, user);
+        page = new ArrayList<>(PAGE_SIZE);
+        for (int i = 0; i < PAGE_SIZE; i++) {
+            page.add(newUser(i, user));
+        }
+    }
+
+    @Benchmark
+    public byte[] serializeUser() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(user);
+    }
+
+    @Benchmark
+    public byte[] serializePage() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(page);
+    }
+
+    private static User newUser(int id, Role... roles) {
+        User user = new User("first" + id, "last" + id, "user" + id + "@mail.ru", 30, "$2a$10$hash");
+        user.setId((long) id);
+        user.setRoles(Set.of(roles));
+        return user;
+    }
+
+}
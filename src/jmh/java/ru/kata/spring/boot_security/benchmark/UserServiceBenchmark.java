@@ -0,0 +1,86 @@
+package ru.kata.spring.boot_security.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.security.core.userdetails.UserDetails;
+import ru.kata.spring.boot_security.SpringBootSecurity;
+import ru.kata.spring.boot_security.dto.RoleDto;
+import ru.kata.spring.boot_security.dto.UserDto;
+import ru.kata.spring.boot_security.dto.UserSearchFilter;
+import ru.kata.spring.boot_security.dto.UserView;
+import ru.kata.spring.boot_security.service.UserImportService;
+import ru.kata.spring.boot_security.service.UserServiceImp;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Чтение пользователей через UserServiceImp на встроенной базе данных (профиль test, H2):
+ * страница списка пользователей, поиск, потоковая выгрузка всех пользователей,
+ * чтение пользователя по email для REST API и loadUserByUsername.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class UserServiceBenchmark {
+
+    private static final int USERS_COUNT = 1000;
+
+    private ConfigurableApplicationContext context;
+
+    private UserServiceImp userService;
+
+    @Setup
+    public void setUp() {
+        context = SpringApplication.run(SpringBootSecurity.class,
+                "--spring.profiles.active=test",
+                "--server.port=0",
+                "--app.security.bcrypt-strength=4",
+                "--logging.level.root=WARN");
+        userService = context.getBean(UserServiceImp.class);
+        List<UserDto> users = new ArrayList<>(USERS_COUNT);
+        for (int i = 0; i < USERS_COUNT; i++) {
+            users.add(new UserDto(null, "first" + i, "last" + i, 20 + i % 50,
+                    "user" + i + "@bench.ru", "password", Set.of(new RoleDto("USER"))));
+        }
+        context.getBean(UserImportService.class).importUsers(users.iterator());
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public List<UserView> getAllUsersWithRolesPage() {
+        return userService.getAllUsersWithRoles(0L, 100);
+    }
+
+    @Benchmark
+    public List<UserView> searchUsers() {
+        return userService.searchUsers(new UserSearchFilter("first5", "USER", 30, 60), 0L, 100);
+    }
+
+    @Benchmark
+    public void streamAllUsersWithRoles(Blackhole blackhole) {
+        userService.streamAllUsersWithRoles(blackhole::consume);
+    }
+
+    @Benchmark
+    public UserView findViewByEmail() {
+        return userService.findViewByEmail("user500@bench.ru");
+    }
+
+    @Benchmark
+    public UserDetails loadUserByUsername() {
+        return userService.loadUserByUsername("user500@bench.ru");
+    }
+
+}
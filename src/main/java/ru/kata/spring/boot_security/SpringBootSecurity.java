@@ -2,12 +2,19 @@ package ru.kata.spring.boot_security;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
+@EnableScheduling
 public class SpringBootSecurity {
 
 	public static void main(String[] args) {
-		SpringApplication.run(SpringBootSecurity.class, args);
+		ConfigurableApplicationContext context = SpringApplication.run(SpringBootSecurity.class, args);
+		// обучающий запуск для архива CDS (см. application-fast.properties): завершиться сразу после запуска
+		if (context.getEnvironment().getProperty("app.startup.exit-on-ready", Boolean.class, false)) {
+			System.exit(SpringApplication.exit(context));
+		}
 	}
 
 }
@@ -0,0 +1,161 @@
+package ru.kata.spring.boot_security.cache;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserCache;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import ru.kata.spring.boot_security.event.UserChangedEvent;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Кэш UserDetails для DaoAuthenticationProvider, чтобы повторные входы
+ * не обращались к базе данных.
+ * Размер ограничен (вытесняются давно не использованные записи), записи устаревают по TTL.
+ * Записи удаляются после коммита изменений пользователя (UserChangedEvent).
+ * <p>
+ * DaoAuthenticationProvider кладет пользователя в кэш после загрузки из базы данных и проверки
+ * пароля BCrypt. Если за это время закоммитили изменение пользователя (новый пароль, удаление),
+ * удаление из кэша уже прошло и в кэш попали бы старые данные. Поэтому каждое удаление
+ * увеличивает счетчик invalidations, getUserFromCache запоминает его в потоке запроса,
+ * а putUserInCache не сохраняет пользователя, если с тех пор были удаления.
+ */
+@Component
+public class BoundedUserCache implements UserCache {
+
+    private final int maxSize;
+
+    private final long ttlNanos;
+
+    private final Map<String, Entry> entries;
+
+    private final LongAdder hits = new LongAdder();
+
+    private final LongAdder misses = new LongAdder();
+
+    private final AtomicLong invalidations = new AtomicLong();
+
+    /**
+     * Значение invalidations при последнем обращении к кэшу в этом потоке.
+     */
+    private final ThreadLocal<Long> lookupInvalidations = new ThreadLocal<>();
+
+    public BoundedUserCache(@Value("${app.security.user-cache.max-size:10000}") int maxSize,
+                            @Value("${app.security.user-cache.ttl:5m}") Duration ttl) {
+        this.maxSize = maxSize;
+        this.ttlNanos = ttl.toNanos();
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > BoundedUserCache.this.maxSize;
+            }
+        };
+    }
+
+    /**
+     * Возвращает копию закэшированного пользователя: ProviderManager стирает пароль
+     * у возвращенного объекта после аутентификации, и это не должно затрагивать кэш.
+     */
+    @Override
+    public UserDetails getUserFromCache(String username) {
+        lookupInvalidations.set(invalidations.get());
+        Entry entry;
+        synchronized (entries) {
+            entry = entries.get(username);
+            if (entry != null && entry.isExpired(System.nanoTime())) {
+                entries.remove(username);
+                entry = null;
+            }
+        }
+        if (entry == null) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return copyOf(entry.user);
+    }
+
+    /**
+     * Сохраняет пользователя, если после getUserFromCache в этом потоке не было удалений:
+     * иначе загруженные данные могли устареть.
+     */
+    @Override
+    public void putUserInCache(UserDetails user) {
+        Long lookup = lookupInvalidations.get();
+        lookupInvalidations.remove();
+        Entry entry = new Entry(copyOf(user), System.nanoTime() + ttlNanos);
+        synchronized (entries) {
+            if (lookup == null || lookup == invalidations.get()) {
+                entries.put(user.getUsername(), entry);
+            }
+        }
+    }
+
+    @Override
+    public void removeUserFromCache(String username) {
+        synchronized (entries) {
+            invalidations.incrementAndGet();
+            entries.remove(username);
+        }
+    }
+
+    public void clear() {
+        synchronized (entries) {
+            invalidations.incrementAndGet();
+            entries.clear();
+        }
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    /**
+     * Удаляет пользователя из кэша после коммита его изменения,
+     * в том числе по прежнему email, если он изменился.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onUserChanged(UserChangedEvent event) {
+        removeUserFromCache(event.getEmail());
+        if (event.getPreviousEmail() != null) {
+            removeUserFromCache(event.getPreviousEmail());
+        }
+    }
+
+    private static UserDetails copyOf(UserDetails user) {
+        return User.withUserDetails(user).build();
+    }
+
+    private static final class Entry {
+
+        private final UserDetails user;
+
+        private final long expiresAtNanos;
+
+        private Entry(UserDetails user, long expiresAtNanos) {
+            this.user = user;
+            this.expiresAtNanos = expiresAtNanos;
+        }
+
+        private boolean isExpired(long now) {
+            return now - expiresAtNanos > 0;
+        }
+    }
+
+}
@@ -0,0 +1,124 @@
+package ru.kata.spring.boot_security.cache;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Ограничение частоты попыток входа по IP-адресу и по email (token bucket).
+ * В каждом ключе допускается до attempts попыток подряд, дальше - одна попытка
+ * раз в period / attempts. Попытка разрешена, только если ее допускают оба ключа.
+ * <p>
+ * Состояние ключа - одно число (время, когда корзина снова будет полной, алгоритм GCRA),
+ * изменяется через CAS без блокировок. Ключи распределены по STRIPES независимым частям,
+ * в каждой не больше max-keys / STRIPES ключей. Ключ с полной корзиной ничего не хранит
+ * и удаляется при переполнении части. Если места нет и после удаления полных корзин,
+ * попытки с новыми ключами отклоняются, пока корзины не наполнятся.
+ */
+@Component
+public class LoginRateLimiter {
+
+    private static final int STRIPES = 16;
+
+    private final long intervalNanos;
+
+    private final long periodNanos;
+
+    private final int stripeCapacity;
+
+    private final Stripe[] stripes = new Stripe[STRIPES];
+
+    private final LongAdder rejectedCount = new LongAdder();
+
+    public LoginRateLimiter(@Value("${app.security.login-rate-limit.attempts:10}") int attempts,
+                            @Value("${app.security.login-rate-limit.period:1m}") Duration period,
+                            @Value("${app.security.login-rate-limit.max-keys:100000}") int maxKeys) {
+        this.periodNanos = period.toNanos();
+        this.intervalNanos = periodNanos / attempts;
+        this.stripeCapacity = Math.max(1, maxKeys / STRIPES);
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe();
+        }
+    }
+
+    /**
+     * Учитывает попытку входа.
+     *
+     * @param ip    адрес клиента.
+     * @param email email из запроса или null, если его нет.
+     * @return 0, если попытка разрешена, иначе через сколько наносекунд можно повторить.
+     */
+    public long tryAcquire(String ip, String email) {
+        long now = System.nanoTime();
+        long wait = acquire("ip:" + ip, now);
+        if (wait == 0 && email != null && !email.isBlank()) {
+            wait = acquire("email:" + email.trim().toLowerCase(Locale.ROOT), now);
+        }
+        if (wait > 0) {
+            rejectedCount.increment();
+        }
+        return wait;
+    }
+
+    public int size() {
+        int size = 0;
+        for (Stripe stripe : stripes) {
+            size += stripe.buckets.size();
+        }
+        return size;
+    }
+
+    public long getRejectedCount() {
+        return rejectedCount.sum();
+    }
+
+    private long acquire(String key, long now) {
+        Stripe stripe = stripes[(key.hashCode() & 0x7fffffff) % STRIPES];
+        AtomicLong bucket = stripe.buckets.get(key);
+        if (bucket == null) {
+            if (stripe.buckets.size() >= stripeCapacity && !stripe.purge(now, intervalNanos, stripeCapacity)) {
+                return intervalNanos;
+            }
+            bucket = stripe.buckets.computeIfAbsent(key, k -> new AtomicLong(now));
+        }
+        while (true) {
+            long fullAt = bucket.get();
+            long nextFullAt = Math.max(fullAt, now) + intervalNanos;
+            if (nextFullAt - now > periodNanos) {
+                return nextFullAt - now - periodNanos;
+            }
+            if (bucket.compareAndSet(fullAt, nextFullAt)) {
+                return 0;
+            }
+        }
+    }
+
+    private static final class Stripe {
+
+        private final ConcurrentMap<String, AtomicLong> buckets = new ConcurrentHashMap<>();
+
+        private final AtomicLong lastPurge = new AtomicLong(System.nanoTime());
+
+        /**
+         * Удаляет ключи с полными корзинами. Выполняется одним потоком и не чаще раза
+         * в period / attempts, остальные потоки в это время получают false.
+         *
+         * @return true, если в части появилось место.
+         */
+        private boolean purge(long now, long intervalNanos, int capacity) {
+            long last = lastPurge.get();
+            if (now - last < intervalNanos || !lastPurge.compareAndSet(last, now)) {
+                return false;
+            }
+            buckets.values().removeIf(bucket -> bucket.get() - now <= 0);
+            return buckets.size() < capacity;
+        }
+    }
+
+}
@@ -0,0 +1,76 @@
+package ru.kata.spring.boot_security.cache;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import ru.kata.spring.boot_security.event.UserChangedEvent;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Список отозванных токенов: после изменения или удаления пользователя (UserChangedEvent)
+ * все его токены, выпущенные до этого момента, перестают приниматься.
+ * Запись хранится не дольше времени жизни токена: более старые токены и так истекли.
+ * Время выпуска токена (iat) хранится с точностью до секунды, поэтому токен, выпущенный
+ * в ту же секунду сразу после изменения, тоже отклоняется, и пользователю нужно войти заново.
+ */
+@Component
+@ConditionalOnProperty(name = "app.security.token.enabled", havingValue = "true")
+public class TokenRevocationList {
+
+    private final Duration ttl;
+
+    private final Map<String, Instant> revokedBefore = new ConcurrentHashMap<>();
+
+    private volatile Instant nextPurge = Instant.MIN;
+
+    public TokenRevocationList(@Value("${app.security.token.ttl:15m}") Duration ttl) {
+        this.ttl = ttl;
+    }
+
+    /**
+     * Отозван ли токен пользователя, выпущенный в момент issuedAt.
+     */
+    public boolean isRevoked(String email, Instant issuedAt) {
+        Instant revokedAt = revokedBefore.get(email);
+        return revokedAt != null && (issuedAt == null || !issuedAt.isAfter(revokedAt));
+    }
+
+    public void revoke(String email) {
+        Instant now = Instant.now();
+        revokedBefore.put(email, now);
+        purgeExpired(now);
+    }
+
+    public int size() {
+        return revokedBefore.size();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onUserChanged(UserChangedEvent event) {
+        if (event.getType() == UserChangedEvent.Type.CREATED) {
+            return;
+        }
+        revoke(event.getEmail());
+        if (event.getPreviousEmail() != null) {
+            revoke(event.getPreviousEmail());
+        }
+    }
+
+    /**
+     * Удаляет записи старше времени жизни токена, не чаще одного раза за это время.
+     */
+    private void purgeExpired(Instant now) {
+        if (now.isBefore(nextPurge)) {
+            return;
+        }
+        nextPurge = now.plus(ttl);
+        Instant expired = now.minus(ttl);
+        revokedBefore.values().removeIf(revokedAt -> revokedAt.isBefore(expired));
+    }
+
+}
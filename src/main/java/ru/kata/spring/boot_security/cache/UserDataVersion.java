@@ -0,0 +1,68 @@
+package ru.kata.spring.boot_security.cache;
+
+import org.springframework.stereotype.Component;
+import org.springframework.util.DigestUtils;
+import org.springframework.transaction.event.TransactionalEventListener;
+import ru.kata.spring.boot_security.event.UserChangedEvent;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Версия данных пользователей для ETag ответов REST API.
+ * Увеличивается после коммита любого изменения пользователя (UserChangedEvent),
+ * поэтому проверить актуальность ответа можно без запросов к базе данных.
+ * Версия содержит метку запуска приложения, чтобы после перезапуска
+ * старые ETag клиентов не совпали с новыми.
+ */
+@Component
+public class UserDataVersion {
+
+    private final String epoch = Long.toString(System.currentTimeMillis(), 36);
+
+    private final AtomicLong counter = new AtomicLong();
+
+    /**
+     * Текущая версия. Читать ее нужно до чтения данных: тогда при параллельном изменении
+     * ответ получит устаревшую версию и будет запрошен повторно, а не наоборот.
+     */
+    public String current() {
+        return epoch + "-" + counter.get();
+    }
+
+    /**
+     * ETag ресурса, зависящего от данных пользователей: текущая версия и параметры ресурса.
+     */
+    public String etag(Object... qualifiers) {
+        StringBuilder etag = new StringBuilder(current());
+        for (Object qualifier : qualifiers) {
+            etag.append('-').append(qualifier);
+        }
+        return etag.toString();
+    }
+
+    /**
+     * ETag данных конкретного пользователя.
+     * Email входит в ETag в виде хэша, чтобы после смены пользователя в том же браузере
+     * закэшированный ответ другого пользователя не считался актуальным.
+     */
+    public String etagForUser(String email) {
+        return etag(DigestUtils.md5DigestAsHex(email.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * ETag HTML-страницы пользователя со встроенными данными.
+     * Страница содержит CSRF-токен, поэтому после его смены (новый вход) ETag тоже меняется.
+     */
+    public String etagForPage(String page, String email, String csrfToken) {
+        return etag(page,
+                DigestUtils.md5DigestAsHex(email.getBytes(StandardCharsets.UTF_8)),
+                DigestUtils.md5DigestAsHex(csrfToken.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onUserChanged(UserChangedEvent event) {
+        counter.incrementAndGet();
+    }
+
+}
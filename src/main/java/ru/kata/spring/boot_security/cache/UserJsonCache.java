@@ -0,0 +1,155 @@
+package ru.kata.spring.boot_security.cache;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.kata.spring.boot_security.event.UserChangedEvent;
+import ru.kata.spring.boot_security.service.UserService;
+import ru.kata.spring.boot_security.service.UserServiceImp;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Сериализованный JSON страниц списка пользователей и текущего пользователя по версии данных
+ * пользователей (UserDataVersion). Используется REST API и страницами со встроенными данными.
+ * <p>
+ * Одновременные одинаковые запросы объединяются: первый запрос читает базу данных и сериализует
+ * ответ, остальные ждут его результат и получают тот же массив байтов. Пока версия не изменилась,
+ * ответ отдается без запросов к базе данных. После коммита изменения пользователя
+ * (UserChangedEvent от UserServiceImp) все записи сбрасываются.
+ * Количество записей ограничено max-entries: при переполнении кэш очищается.
+ * <p>
+ * Версия читается до загрузки данных, поэтому данные, прочитанные во время изменения,
+ * сохраняются под старой версией и новым запросам не отдаются.
+ * Данные читаются в транзакции transactionTemplate (не только для чтения), то есть с основной
+ * базы данных, а не с реплики (ReadReplicaDataSourceConfig): версия увеличивается сразу после
+ * коммита, и отстающая реплика сохранила бы под новой версией старые данные.
+ * Символы {@code < > &} в JSON заменены escape-последовательностями, поэтому тот же JSON
+ * можно вывести внутри script без экранирования HTML.
+ */
+@Component
+public class UserJsonCache {
+
+    private final UserService userService;
+
+    private final UserDataVersion userDataVersion;
+
+    private final ObjectMapper objectMapper;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final int maxEntries;
+
+    private volatile Snapshot snapshot = new Snapshot("");
+
+    public UserJsonCache(UserService userService,
+                         UserDataVersion userDataVersion,
+                         ObjectMapper objectMapper,
+                         TransactionTemplate transactionTemplate,
+                         @Value("${app.users.json-cache.max-entries:1000}") int maxEntries) {
+        this.userService = userService;
+        this.userDataVersion = userDataVersion;
+        this.objectMapper = objectMapper;
+        this.transactionTemplate = transactionTemplate;
+        this.maxEntries = maxEntries;
+    }
+
+    /**
+     * JSON страницы пользователей (UserService.getAllUsersWithRoles).
+     * afterId и limit приводятся к значениям, которые использует запрос, поэтому, например,
+     * limit=1000 и limit=500 занимают одну запись кэша.
+     */
+    public byte[] usersPage(Long afterId, int limit) {
+        long after = afterId == null ? 0L : Math.max(0L, afterId);
+        int pageSize = Math.max(1, Math.min(limit, UserServiceImp.MAX_PAGE_SIZE));
+        return get("all-users:" + after + ":" + pageSize, () -> userService.getAllUsersWithRoles(after, pageSize));
+    }
+
+    /**
+     * JSON пользователя с указанным email (UserService.findViewByEmail), "null" - если его нет.
+     */
+    public byte[] currentUser(String email) {
+        return get("current-user:" + email, () -> userService.findViewByEmail(email));
+    }
+
+    /**
+     * Сбрасывает все записи после коммита изменения пользователя.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onUserChanged(UserChangedEvent event) {
+        snapshot = new Snapshot("");
+    }
+
+    private byte[] get(String key, Supplier<?> loader) {
+        String version = userDataVersion.current();
+        Snapshot current = snapshot;
+        if (!current.version.equals(version)) {
+            current = new Snapshot(version);
+            snapshot = current;
+        }
+        CompletableFuture<byte[]> result = current.values.get(key);
+        if (result == null) {
+            if (current.values.size() >= maxEntries) {
+                current.values.clear();
+            }
+            CompletableFuture<byte[]> created = new CompletableFuture<>();
+            result = current.values.putIfAbsent(key, created);
+            if (result == null) {
+                return load(current, key, created, loader);
+            }
+        }
+        try {
+            return result.join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException cause ? cause : e;
+        }
+    }
+
+    /**
+     * Загружает данные для ожидающих запросов. При ошибке запись удаляется,
+     * чтобы следующий запрос повторил загрузку, а ожидающие получают ту же ошибку.
+     */
+    private byte[] load(Snapshot snapshot, String key, CompletableFuture<byte[]> result, Supplier<?> loader) {
+        try {
+            byte[] json = toHtmlSafeJson(transactionTemplate.execute(status -> loader.get()));
+            result.complete(json);
+            return json;
+        } catch (RuntimeException | Error e) {
+            snapshot.values.remove(key, result);
+            result.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    private byte[] toHtmlSafeJson(Object value) {
+        try {
+            return objectMapper.writeValueAsString(value)
+                    .replace("<", "\\u003c")
+                    .replace(">", "\\u003e")
+                    .replace("&", "\\u0026")
+                    .getBytes(StandardCharsets.UTF_8);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Cannot serialize user data", e);
+        }
+    }
+
+    private static final class Snapshot {
+
+        private final String version;
+
+        private final Map<String, CompletableFuture<byte[]>> values = new ConcurrentHashMap<>();
+
+        private Snapshot(String version) {
+            this.version = version;
+        }
+    }
+
+}
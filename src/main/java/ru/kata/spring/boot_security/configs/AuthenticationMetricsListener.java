@@ -0,0 +1,47 @@
+package ru.kata.spring.boot_security.configs;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.context.event.EventListener;
+import org.springframework.security.authentication.event.AbstractAuthenticationFailureEvent;
+import org.springframework.security.authentication.event.AuthenticationSuccessEvent;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.oauth2.server.resource.BearerTokenAuthenticationToken;
+import org.springframework.security.oauth2.server.resource.authentication.AbstractOAuth2TokenAuthenticationToken;
+import org.springframework.stereotype.Component;
+
+/**
+ * Считает успешные и неуспешные попытки входа (метрика auth.login).
+ * Проверки токенов (режим без HTTP-сессий) выполняются на каждом запросе и входом не считаются.
+ */
+@Component
+public class AuthenticationMetricsListener {
+
+    private final MeterRegistry registry;
+
+    public AuthenticationMetricsListener(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    @EventListener
+    public void onSuccess(AuthenticationSuccessEvent event) {
+        if (isToken(event.getAuthentication())) {
+            return;
+        }
+        registry.counter("auth.login", "result", "success", "reason", "none").increment();
+    }
+
+    @EventListener
+    public void onFailure(AbstractAuthenticationFailureEvent event) {
+        if (isToken(event.getAuthentication())) {
+            return;
+        }
+        registry.counter("auth.login", "result", "failure",
+                "reason", event.getException().getClass().getSimpleName()).increment();
+    }
+
+    private static boolean isToken(Authentication authentication) {
+        return authentication instanceof BearerTokenAuthenticationToken
+                || authentication instanceof AbstractOAuth2TokenAuthenticationToken;
+    }
+
+}
@@ -0,0 +1,90 @@
+package ru.kata.spring.boot_security.configs;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.security.web.util.matcher.AntPathRequestMatcher;
+import org.springframework.security.web.util.matcher.OrRequestMatcher;
+import org.springframework.security.web.util.matcher.RequestMatcher;
+import org.springframework.web.filter.OncePerRequestFilter;
+import ru.kata.spring.boot_security.cache.LoginRateLimiter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ограничивает частоту попыток входа (LoginRateLimiter) до аутентификации:
+ * отклоненная попытка не обращается к базе данных и не проверяет пароль BCrypt.
+ * Учитываются вход через форму (POST /login, email в параметре username)
+ * и все запросы с заголовком HTTP Basic на любой адрес (email из заголовка),
+ * в том числе выдача токена (POST /api/token).
+ * Отклоненная попытка получает 429 Too Many Requests с заголовком Retry-After.
+ */
+public class LoginRateLimitFilter extends OncePerRequestFilter {
+
+    private static final String BASIC_PREFIX = "Basic ";
+
+    private final RequestMatcher formLoginMatcher = new AntPathRequestMatcher("/login", HttpMethod.POST.name());
+
+    private final RequestMatcher loginMatcher = new OrRequestMatcher(formLoginMatcher,
+            LoginRateLimitFilter::hasBasicCredentials);
+
+    private final LoginRateLimiter loginRateLimiter;
+
+    public LoginRateLimitFilter(LoginRateLimiter loginRateLimiter) {
+        this.loginRateLimiter = loginRateLimiter;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !loginMatcher.matches(request);
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request,
+                                    HttpServletResponse response,
+                                    FilterChain filterChain) throws ServletException, IOException {
+        long waitNanos = loginRateLimiter.tryAcquire(request.getRemoteAddr(), email(request));
+        if (waitNanos > 0) {
+            response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+            response.setHeader(HttpHeaders.RETRY_AFTER,
+                    String.valueOf(Math.max(1, TimeUnit.NANOSECONDS.toSeconds(waitNanos + 999_999_999))));
+            response.setContentType(MediaType.TEXT_PLAIN_VALUE);
+            response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+            response.getWriter().write("Too many login attempts, try again later");
+            return;
+        }
+        filterChain.doFilter(request, response);
+    }
+
+    private String email(HttpServletRequest request) {
+        if (formLoginMatcher.matches(request)) {
+            return request.getParameter("username");
+        }
+        if (!hasBasicCredentials(request)) {
+            return null;
+        }
+        String header = request.getHeader(HttpHeaders.AUTHORIZATION);
+        try {
+            String credentials = new String(Base64.getDecoder().decode(
+                    header.substring(BASIC_PREFIX.length()).trim()), StandardCharsets.UTF_8);
+            int colon = credentials.indexOf(':');
+            return colon < 0 ? null : credentials.substring(0, colon);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static boolean hasBasicCredentials(HttpServletRequest request) {
+        String header = request.getHeader(HttpHeaders.AUTHORIZATION);
+        return header != null && header.regionMatches(true, 0, BASIC_PREFIX, 0, BASIC_PREFIX.length());
+    }
+
+}
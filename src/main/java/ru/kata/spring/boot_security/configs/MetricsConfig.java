@@ -0,0 +1,97 @@
+package ru.kata.spring.boot_security.configs;
+
+import io.micrometer.core.aop.TimedAspect;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import ru.kata.spring.boot_security.cache.BoundedUserCache;
+import ru.kata.spring.boot_security.cache.LoginRateLimiter;
+import ru.kata.spring.boot_security.service.AuditLogWriter;
+import ru.kata.spring.boot_security.service.PasswordHasher;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Метрики приложения (Micrometer), доступны на /actuator/prometheus.
+ * Пул соединений Hikari, статистика Hibernate и вызовы репозиториев Spring Data
+ * регистрируются автоконфигурацией Spring Boot.
+ */
+@Configuration
+public class MetricsConfig {
+
+    /**
+     * Включает обработку @Timed на методах сервисов.
+     */
+    @Bean
+    public TimedAspect timedAspect(MeterRegistry registry) {
+        return new TimedAspect(registry);
+    }
+
+    @Bean
+    public MeterBinder userCacheMetrics(BoundedUserCache userCache) {
+        return registry -> {
+            Gauge.builder("auth.user.cache.size", userCache, BoundedUserCache::size)
+                    .description("Number of users in the authentication cache")
+                    .register(registry);
+            FunctionCounter.builder("auth.user.cache.requests", userCache, BoundedUserCache::getHitCount)
+                    .tag("result", "hit")
+                    .register(registry);
+            FunctionCounter.builder("auth.user.cache.requests", userCache, BoundedUserCache::getMissCount)
+                    .tag("result", "miss")
+                    .register(registry);
+        };
+    }
+
+    @Bean
+    public MeterBinder loginRateLimitMetrics(LoginRateLimiter loginRateLimiter) {
+        return registry -> {
+            Gauge.builder("auth.login.rate.limit.keys", loginRateLimiter, LoginRateLimiter::size)
+                    .description("IP addresses and emails tracked by the login rate limiter")
+                    .register(registry);
+            FunctionCounter.builder("auth.login.rate.limit.rejected", loginRateLimiter,
+                            LoginRateLimiter::getRejectedCount)
+                    .description("Login attempts rejected with 429 before authentication")
+                    .register(registry);
+        };
+    }
+
+    @Bean
+    public MeterBinder passwordHashingMetrics(PasswordHasher passwordHasher) {
+        return registry -> {
+            FunctionTimer.builder("password.hashing.encode", passwordHasher,
+                            PasswordHasher::getEncodedCount,
+                            hasher -> hasher.getEncodeNanos(),
+                            TimeUnit.NANOSECONDS)
+                    .description("BCrypt encode time")
+                    .register(registry);
+            Gauge.builder("password.hashing.pool.size", passwordHasher, PasswordHasher::getPoolSize)
+                    .register(registry);
+            Gauge.builder("password.hashing.active", passwordHasher, PasswordHasher::getActiveCount)
+                    .register(registry);
+            Gauge.builder("password.hashing.queue", passwordHasher, PasswordHasher::getQueueSize)
+                    .register(registry);
+            FunctionCounter.builder("password.hashing.rejected", passwordHasher, PasswordHasher::getRejectedCount)
+                    .register(registry);
+        };
+    }
+
+    @Bean
+    public MeterBinder auditLogMetrics(AuditLogWriter auditLogWriter) {
+        return registry -> {
+            Gauge.builder("audit.log.queue", auditLogWriter, AuditLogWriter::getQueueSize)
+                    .description("Audit records waiting to be written")
+                    .register(registry);
+            FunctionCounter.builder("audit.log.records", auditLogWriter, AuditLogWriter::getWrittenCount)
+                    .tag("result", "written")
+                    .register(registry);
+            FunctionCounter.builder("audit.log.records", auditLogWriter, AuditLogWriter::getDroppedCount)
+                    .tag("result", "dropped")
+                    .register(registry);
+        };
+    }
+
+}
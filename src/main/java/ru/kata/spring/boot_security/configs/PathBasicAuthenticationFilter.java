@@ -0,0 +1,31 @@
+package ru.kata.spring.boot_security.configs;
+
+import org.springframework.security.authentication.AuthenticationManager;
+import org.springframework.security.web.AuthenticationEntryPoint;
+import org.springframework.security.web.authentication.www.BasicAuthenticationFilter;
+import org.springframework.security.web.util.matcher.RequestMatcher;
+
+import javax.servlet.http.HttpServletRequest;
+
+/**
+ * Аутентификация HTTP Basic только для запросов, подходящих под requestMatcher.
+ * На остальных адресах заголовок Authorization: Basic не проверяется,
+ * и страницы и REST API аутентифицируются только через форму входа.
+ */
+public class PathBasicAuthenticationFilter extends BasicAuthenticationFilter {
+
+    private final RequestMatcher requestMatcher;
+
+    public PathBasicAuthenticationFilter(AuthenticationManager authenticationManager,
+                                         AuthenticationEntryPoint authenticationEntryPoint,
+                                         RequestMatcher requestMatcher) {
+        super(authenticationManager, authenticationEntryPoint);
+        this.requestMatcher = requestMatcher;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !requestMatcher.matches(request);
+    }
+
+}
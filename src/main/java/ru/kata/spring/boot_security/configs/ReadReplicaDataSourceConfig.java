@@ -0,0 +1,102 @@
+package ru.kata.spring.boot_security.configs;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Чтение с реплики (включается заданием app.datasource.replica.url).
+ * Транзакции @Transactional(readOnly = true) получают соединения из пула реплики,
+ * остальные запросы - из основного пула (spring.datasource).
+ * Пул реплики настраивается через app.datasource.replica.hikari.*, свойства драйвера
+ * (кэш prepared statements и т. п.) берутся из основного пула.
+ * <p>
+ * Реплика отстает от основной базы данных, поэтому ответ сразу после изменения читается
+ * в той же транзакции, что и изменение (как в UserServiceImp.patchUser).
+ * Данные, которые кэшируются или рассылаются по версии UserDataVersion (UserJsonCache,
+ * UserEventBroadcaster), тоже читаются с основной базы: в транзакции не только для чтения,
+ * к которой присоединяются методы с readOnly = true. Версия увеличивается сразу после коммита,
+ * и данные реплики, прочитанные под новой версией, отдавались бы до следующего изменения.
+ * Остальные транзакции только для чтения (поиск, выгрузка, журнал аудита) выполняются на реплике.
+ */
+@Configuration(proxyBeanMethods = false)
+@ConditionalOnProperty(name = "app.datasource.replica.url")
+public class ReadReplicaDataSourceConfig {
+
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties properties) {
+        HikariDataSource dataSource = properties.initializeDataSourceBuilder()
+                .type(HikariDataSource.class)
+                .build();
+        dataSource.setPoolName("primary");
+        return dataSource;
+    }
+
+    @Bean
+    @ConfigurationProperties("app.datasource.replica.hikari")
+    public HikariDataSource replicaDataSource(DataSourceProperties properties,
+                                              @Qualifier("primaryDataSource") HikariDataSource primaryDataSource,
+                                              @Value("${app.datasource.replica.url}") String url,
+                                              @Value("${app.datasource.replica.username:${spring.datasource.username:}}") String username,
+                                              @Value("${app.datasource.replica.password:${spring.datasource.password:}}") String password) {
+        HikariDataSource dataSource = DataSourceBuilder.create()
+                .type(HikariDataSource.class)
+                .driverClassName(properties.determineDriverClassName())
+                .url(url)
+                .username(username)
+                .password(password)
+                .build();
+        dataSource.setPoolName("replica");
+        dataSource.setReadOnly(true);
+        Properties driverProperties = new Properties();
+        driverProperties.putAll(primaryDataSource.getDataSourceProperties());
+        dataSource.setDataSourceProperties(driverProperties);
+        return dataSource;
+    }
+
+    /**
+     * Флаг readOnly транзакции выставляется после того, как JpaTransactionManager запросил соединение,
+     * поэтому маршрутизация обернута в LazyConnectionDataSourceProxy: настоящее соединение
+     * берется из пула только при первом SQL-запросе, когда флаг уже известен.
+     */
+    @Bean
+    @Primary
+    public DataSource dataSource(@Qualifier("primaryDataSource") DataSource primaryDataSource,
+                                 @Qualifier("replicaDataSource") DataSource replicaDataSource) {
+        TransactionRoutingDataSource routingDataSource = new TransactionRoutingDataSource();
+        routingDataSource.setTargetDataSources(Map.of(
+                Route.PRIMARY, primaryDataSource,
+                Route.REPLICA, replicaDataSource));
+        routingDataSource.setDefaultTargetDataSource(primaryDataSource);
+        routingDataSource.afterPropertiesSet();
+        return new LazyConnectionDataSourceProxy(routingDataSource);
+    }
+
+    private enum Route {
+        PRIMARY, REPLICA
+    }
+
+    private static class TransactionRoutingDataSource extends AbstractRoutingDataSource {
+
+        @Override
+        protected Object determineCurrentLookupKey() {
+            return TransactionSynchronizationManager.isCurrentTransactionReadOnly() ? Route.REPLICA : Route.PRIMARY;
+        }
+    }
+
+}
@@ -0,0 +1,71 @@
+package ru.kata.spring.boot_security.configs;
+
+import org.ehcache.config.CacheConfiguration;
+import org.ehcache.config.builders.CacheConfigurationBuilder;
+import org.ehcache.config.builders.ConfigurationBuilder;
+import org.ehcache.config.builders.ExpiryPolicyBuilder;
+import org.ehcache.config.builders.ResourcePoolsBuilder;
+import org.ehcache.jsr107.EhcacheCachingProvider;
+import org.hibernate.cache.jcache.ConfigSettings;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import ru.kata.spring.boot_security.model.Role;
+import ru.kata.spring.boot_security.model.User;
+
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+import java.net.URI;
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Кэш второго уровня Hibernate в памяти процесса (JCache, реализация Ehcache).
+ * Кэшируются пользователи, их роли (коллекция users.roles), роли и соответствие email - id
+ * (natural id), поэтому повторный поиск пользователя по email не обращается к базе данных.
+ * Каждая область ограничена app.cache.entities.max-entries записями, записи устаревают через
+ * app.cache.entities.ttl после записи в кэш.
+ * <p>
+ * Изменения сущностей обновляют кэш после коммита (стратегия READ_WRITE).
+ * Массовые JPQL UPDATE/DELETE очищают области своей сущности, нативные запросы
+ * изменения данных - все области (см. UserRepository).
+ * <p>
+ * Менеджер кэша создается для каждого контекста приложения отдельно (в тестах их несколько)
+ * и передается в Hibernate, который закрывает его при остановке.
+ * Области без настройки здесь не создаются (hibernate.javax.cache.missing_cache_strategy=fail).
+ */
+@Configuration(proxyBeanMethods = false)
+public class SecondLevelCacheConfig {
+
+    private static final List<String> REGIONS = List.of(
+            User.CACHE_REGION,
+            User.NATURAL_ID_CACHE_REGION,
+            User.ROLES_CACHE_REGION,
+            Role.CACHE_REGION);
+
+    @Bean
+    public HibernatePropertiesCustomizer secondLevelCacheCustomizer(
+            @Value("${app.cache.entities.max-entries:10000}") long maxEntries,
+            @Value("${app.cache.entities.ttl:10m}") Duration ttl) {
+        CacheManager cacheManager = createCacheManager(maxEntries, ttl);
+        return properties -> properties.put(ConfigSettings.CACHE_MANAGER, cacheManager);
+    }
+
+    private static CacheManager createCacheManager(long maxEntries, Duration ttl) {
+        CacheConfiguration<Object, Object> cacheConfiguration = CacheConfigurationBuilder
+                .newCacheConfigurationBuilder(Object.class, Object.class, ResourcePoolsBuilder.heap(maxEntries))
+                .withExpiry(ExpiryPolicyBuilder.timeToLiveExpiration(ttl))
+                .build();
+        ConfigurationBuilder configuration = ConfigurationBuilder.newConfigurationBuilder();
+        for (String region : REGIONS) {
+            configuration = configuration.withCache(region, cacheConfiguration);
+        }
+        EhcacheCachingProvider provider = (EhcacheCachingProvider) Caching.getCachingProvider(
+                EhcacheCachingProvider.class.getName());
+        return provider.getCacheManager(URI.create("urn:second-level-cache:" + UUID.randomUUID()),
+                configuration.build());
+    }
+
+}
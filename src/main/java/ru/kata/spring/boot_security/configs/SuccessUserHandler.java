@@ -1,5 +1,6 @@
 package ru.kata.spring.boot_security.configs;
 
+import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.authority.AuthorityUtils;
 import org.springframework.security.web.authentication.AuthenticationSuccessHandler;
@@ -13,19 +14,28 @@ import java.util.Set;
 @Component
 public class SuccessUserHandler implements AuthenticationSuccessHandler {
 
+    private final MeterRegistry registry;
+
+    public SuccessUserHandler(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
     @Override
     public void onAuthenticationSuccess(HttpServletRequest httpServletRequest,
                                         HttpServletResponse httpServletResponse,
                                         Authentication authentication) throws IOException {
         Set<String> roles = AuthorityUtils.authorityListToSet(authentication.getAuthorities());
 
+        String target;
         if (roles.contains("ROLE_ADMIN")) {
-            httpServletResponse.sendRedirect("/admin");
+            target = "/admin";
         } else if (roles.contains("ROLE_USER")) {
-            httpServletResponse.sendRedirect("/user");
+            target = "/user";
         } else {
-            httpServletResponse.sendRedirect("/");
+            target = "/";
         }
+        registry.counter("auth.login.redirect", "target", target).increment();
+        httpServletResponse.sendRedirect(target);
     }
 
 }
\ No newline at end of file
@@ -0,0 +1,39 @@
+package ru.kata.spring.boot_security.configs;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.task.TaskExecutionAutoConfiguration;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.support.TaskExecutorAdapter;
+
+import java.util.concurrent.Executors;
+
+/**
+ * Режим виртуальных потоков (app.threads.virtual=true).
+ * Каждый HTTP-запрос Tomcat и асинхронные задачи Spring MVC (потоковая выгрузка, SSE)
+ * выполняются в отдельном виртуальном потоке, поэтому ожидание базы данных
+ * не занимает поток платформы и число одновременных запросов не ограничено
+ * server.tomcat.threads.max. Ограничением становятся пул соединений
+ * (spring.datasource.hikari.maximum-pool-size) и server.tomcat.max-connections.
+ * Хэширование паролей остается в PasswordHasher: оно нагружает CPU,
+ * и виртуальные потоки его не ускоряют.
+ */
+@Configuration(proxyBeanMethods = false)
+@ConditionalOnProperty(name = "app.threads.virtual", havingValue = "true")
+public class VirtualThreadsConfig {
+
+    @Bean
+    public TomcatProtocolHandlerCustomizer<?> virtualThreadsProtocolHandlerCustomizer() {
+        return protocolHandler -> protocolHandler.setExecutor(
+                Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("http-vt-", 0).factory()));
+    }
+
+    @Bean(TaskExecutionAutoConfiguration.APPLICATION_TASK_EXECUTOR_BEAN_NAME)
+    public AsyncTaskExecutor applicationTaskExecutor() {
+        return new TaskExecutorAdapter(
+                Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("task-vt-", 0).factory()));
+    }
+
+}
@@ -1,43 +1,92 @@
 package ru.kata.spring.boot_security.configs;
 
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
 import org.springframework.security.config.annotation.authentication.builders.AuthenticationManagerBuilder;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.builders.WebSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.config.annotation.web.configuration.WebSecurityConfigurerAdapter;
+import org.springframework.security.config.http.SessionCreationPolicy;
+import org.springframework.security.core.userdetails.UserCache;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.NoOpPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.security.oauth2.server.resource.web.BearerTokenAuthenticationEntryPoint;
+import org.springframework.security.web.AuthenticationEntryPoint;
+import org.springframework.security.web.authentication.AuthenticationSuccessHandler;
+import org.springframework.security.web.authentication.LoginUrlAuthenticationEntryPoint;
+import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
+import org.springframework.security.web.authentication.www.BasicAuthenticationEntryPoint;
+import org.springframework.security.web.authentication.www.BasicAuthenticationFilter;
+import org.springframework.security.web.csrf.CookieCsrfTokenRepository;
+import org.springframework.security.web.util.matcher.AntPathRequestMatcher;
+import org.springframework.security.web.util.matcher.MediaTypeRequestMatcher;
+import org.springframework.security.web.util.matcher.OrRequestMatcher;
+import org.springframework.security.web.util.matcher.RequestMatcher;
+import ru.kata.spring.boot_security.cache.LoginRateLimiter;
+import ru.kata.spring.boot_security.service.TokenService;
 import ru.kata.spring.boot_security.service.UserServiceImp;
 
+import java.util.Set;
+
 @Configuration
 @EnableWebSecurity
 public class WebSecurityConfig extends WebSecurityConfigurerAdapter {
 
+    private static final String BASIC_AUTHENTICATION_REALM = "Realm";
+
     private final SuccessUserHandler successUserHandler;
 
     private final UserServiceImp userServiceImp;
 
+    private final UserCache userCache;
+
+    private final TokenService tokenService;
+
+    private final LoginRateLimiter loginRateLimiter;
+
     public WebSecurityConfig(SuccessUserHandler successUserHandler,
-                             UserServiceImp userServiceImp) {
+                             UserServiceImp userServiceImp,
+                             UserCache userCache,
+                             ObjectProvider<TokenService> tokenService,
+                             LoginRateLimiter loginRateLimiter,
+                             @Value("${app.security.login-rate-limit.enabled:true}") boolean loginRateLimitEnabled) {
         this.successUserHandler = successUserHandler;
         this.userServiceImp = userServiceImp;
+        this.userCache = userCache;
+        this.tokenService = tokenService.getIfAvailable();
+        this.loginRateLimiter = loginRateLimitEnabled ? loginRateLimiter : null;
     }
 
     @Override
     protected void configure(HttpSecurity http) throws Exception {
+        if (tokenService != null) {
+            configureTokenAuthentication(http);
+        }
+        if (loginRateLimiter != null) {
+            // до проверки пароля: отклоненная попытка не читает базу данных и не вызывает BCrypt
+            http.addFilterBefore(new LoginRateLimitFilter(loginRateLimiter), UsernamePasswordAuthenticationFilter.class);
+        }
+        http.addFilterAt(new PathBasicAuthenticationFilter(authenticationManager(), basicEntryPoint(),
+                basicAuthenticationMatcher()), BasicAuthenticationFilter.class);
         http
                 .authorizeRequests()
                 .antMatchers("/", "/login").permitAll()
+                .antMatchers("/actuator/health").permitAll()
+                .antMatchers("/actuator/**").hasRole("ADMIN")
                 .antMatchers("/admin").hasRole("ADMIN")
-                .antMatchers("/api/admin").hasRole("ADMIN")
+                .antMatchers("/api/admin/**").hasRole("ADMIN")
                 .antMatchers("/user").hasRole("USER")
                 .anyRequest().authenticated()
                 .and()
-                .formLogin().successHandler(successUserHandler)
+                .formLogin().successHandler(successHandler())
                 .loginPage("/login")
                 .permitAll()
                 .and()
@@ -45,30 +94,112 @@ public class WebSecurityConfig extends WebSecurityConfigurerAdapter {
                 .permitAll();
     }
 
+    /**
+     * Режим без HTTP-сессий (app.security.token.enabled=true): после входа выдается подписанный токен
+     * (TokenService), и запросы аутентифицируются по нему без обращения к базе данных.
+     * CSRF-токен хранится в cookie вместо сессии.
+     */
+    private void configureTokenAuthentication(HttpSecurity http) throws Exception {
+        http
+                .sessionManagement().sessionCreationPolicy(SessionCreationPolicy.STATELESS)
+                .and()
+                .csrf().csrfTokenRepository(new CookieCsrfTokenRepository())
+                .ignoringAntMatchers("/api/token")
+                .and()
+                .logout().deleteCookies(tokenService.getCookieName())
+                .and()
+                .oauth2ResourceServer()
+                .bearerTokenResolver(tokenService.bearerTokenResolver())
+                .authenticationEntryPoint(tokenEntryPoint())
+                .jwt()
+                .decoder(tokenService.getJwtDecoder())
+                .jwtAuthenticationConverter(tokenService.jwtAuthenticationConverter());
+    }
+
+    /**
+     * HTTP Basic принимается только сборщиками метрик (/actuator/**),
+     * а в режиме без HTTP-сессий - еще и при выдаче токена (POST /api/token).
+     */
+    private RequestMatcher basicAuthenticationMatcher() {
+        RequestMatcher actuatorMatcher = new AntPathRequestMatcher("/actuator/**");
+        if (tokenService == null) {
+            return actuatorMatcher;
+        }
+        return new OrRequestMatcher(actuatorMatcher,
+                new AntPathRequestMatcher("/api/token", HttpMethod.POST.name()));
+    }
+
+    private AuthenticationEntryPoint basicEntryPoint() {
+        BasicAuthenticationEntryPoint entryPoint = new BasicAuthenticationEntryPoint();
+        entryPoint.setRealmName(BASIC_AUTHENTICATION_REALM);
+        return entryPoint;
+    }
+
+    private AuthenticationSuccessHandler successHandler() {
+        if (tokenService == null) {
+            return successUserHandler;
+        }
+        return (request, response, authentication) -> {
+            tokenService.writeCookie(response, tokenService.issue(authentication));
+            successUserHandler.onAuthenticationSuccess(request, response, authentication);
+        };
+    }
+
+    /**
+     * Недействительный токен из cookie удаляется, страницы перенаправляются на /login,
+     * а запросы к REST API получают 401.
+     */
+    private AuthenticationEntryPoint tokenEntryPoint() {
+        AuthenticationEntryPoint loginEntryPoint = new LoginUrlAuthenticationEntryPoint("/login");
+        AuthenticationEntryPoint bearerEntryPoint = new BearerTokenAuthenticationEntryPoint();
+        MediaTypeRequestMatcher htmlMatcher = new MediaTypeRequestMatcher(MediaType.TEXT_HTML);
+        htmlMatcher.setIgnoredMediaTypes(Set.of(MediaType.ALL));
+        return (request, response, authException) -> {
+            if (tokenService.hasCookie(request)) {
+                tokenService.clearCookie(response);
+            }
+            if (htmlMatcher.matches(request)) {
+                loginEntryPoint.commence(request, response, authException);
+            } else {
+                bearerEntryPoint.commence(request, response, authException);
+            }
+        };
+    }
+
     /**
      * Используется не безопасный NoOpPasswordEncoder
-     * только в рамках учебного проекта
+     * только в рамках учебного проекта.
+     * Пользователи кэшируются в UserCache, чтобы повторные входы не обращались к базе данных.
      */
     @Autowired
-    public void configureGlobal(AuthenticationManagerBuilder auth) throws Exception {
-        auth.userDetailsService(userServiceImp)
-                .passwordEncoder(passwordEncoder());
+    public void configureGlobal(AuthenticationManagerBuilder auth,
+                                PasswordEncoder passwordEncoder) throws Exception {
+        DaoAuthenticationProvider authenticationProvider = new DaoAuthenticationProvider();
+        authenticationProvider.setUserDetailsService(userServiceImp);
+        authenticationProvider.setPasswordEncoder(passwordEncoder);
+        authenticationProvider.setUserCache(userCache);
+        auth.authenticationProvider(authenticationProvider);
     }
 
+    /**
+     * Сложность BCrypt задается app.security.bcrypt-strength (по умолчанию 10).
+     */
     @Bean
-    public static PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+    public static PasswordEncoder passwordEncoder(@Value("${app.security.bcrypt-strength:10}") int strength) {
+        return new BCryptPasswordEncoder(strength);
     }
 
 
 
     /**
      * Разрешает доступ к статическим ресурсам /css
+     * Разрешает доступ к статическим ресурсам /js
      * Разрешает доступ к статическим ресурсам /favIcon
      */
     @Override
     public void configure(WebSecurity web) throws Exception {
         web.ignoring().antMatchers("/css/**",
+                                    "/js/**",
                                     "/favIcon/**");
     }
 
@@ -1,15 +1,63 @@
 package ru.kata.spring.boot_security.controller;
 
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.security.web.csrf.CsrfToken;
 import org.springframework.stereotype.Controller;
+import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.context.request.WebRequest;
+import ru.kata.spring.boot_security.cache.UserJsonCache;
+import ru.kata.spring.boot_security.cache.UserDataVersion;
+import ru.kata.spring.boot_security.event.UserEventBroadcaster;
+
+import javax.servlet.http.HttpServletResponse;
+import java.nio.charset.StandardCharsets;
+import java.security.Principal;
 
 @Controller
 @RequestMapping("/admin")
 public class AdminController {
 
+    /**
+     * Размер первой страницы пользователей, встраиваемой в страницу (как USERS_PAGE_SIZE в adminPage.js).
+     */
+    public static final int USERS_PAGE_SIZE = 100;
+
+    private final UserDataVersion userDataVersion;
+
+    private final UserJsonCache userJsonCache;
+
+    private final UserEventBroadcaster userEventBroadcaster;
+
+    public AdminController(UserDataVersion userDataVersion,
+                           UserJsonCache userJsonCache,
+                           UserEventBroadcaster userEventBroadcaster) {
+        this.userDataVersion = userDataVersion;
+        this.userJsonCache = userJsonCache;
+        this.userEventBroadcaster = userEventBroadcaster;
+    }
+
+    /**
+     * Страница администратора со встроенными данными: текущий пользователь и первая страница
+     * списка пользователей (JSON island), поэтому страница не делает запросов к API при открытии.
+     * Вместе с данными передается id событий SSE, чтобы изменения, сделанные
+     * до подписки на события, не потерялись.
+     * Ответ содержит ETag; при совпадении If-None-Match возвращается 304 без отрисовки шаблона.
+     */
     @GetMapping
-    public String showAdminPage() {
+    public String showAdminPage(Principal principal, CsrfToken csrfToken, WebRequest request,
+                                HttpServletResponse response, Model model) {
+        String email = principal.getName();
+        if (request.checkNotModified(userDataVersion.etagForPage("admin", email, csrfToken.getToken()))) {
+            return null;
+        }
+        response.setHeader(HttpHeaders.CACHE_CONTROL, CacheControl.noCache().cachePrivate().getHeaderValue());
+        model.addAttribute("userEventId", userEventBroadcaster.currentEventId());
+        model.addAttribute("currentUserJson", new String(userJsonCache.currentUser(email), StandardCharsets.UTF_8));
+        model.addAttribute("usersJson",
+                new String(userJsonCache.usersPage(0L, USERS_PAGE_SIZE), StandardCharsets.UTF_8));
         return "adminPage";
     }
 
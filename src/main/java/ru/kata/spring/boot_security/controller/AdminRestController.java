@@ -1,12 +1,32 @@
 package ru.kata.spring.boot_security.controller;
 
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.http.CacheControl;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import ru.kata.spring.boot_security.cache.UserDataVersion;
+import ru.kata.spring.boot_security.cache.UserJsonCache;
+import ru.kata.spring.boot_security.dto.BulkDeleteResult;
+import ru.kata.spring.boot_security.dto.BulkImportResult;
 import ru.kata.spring.boot_security.dto.UserDto;
+import ru.kata.spring.boot_security.dto.UserPatchDto;
+import ru.kata.spring.boot_security.dto.UserSearchFilter;
+import ru.kata.spring.boot_security.dto.UserView;
+import ru.kata.spring.boot_security.event.UserEventBroadcaster;
 
-import ru.kata.spring.boot_security.model.User;
+import ru.kata.spring.boot_security.service.UserImportService;
 import ru.kata.spring.boot_security.service.UserService;
+import ru.kata.spring.boot_security.util.UserDtoReader;
 
+import javax.validation.Valid;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.security.Principal;
 
 import java.util.List;
@@ -15,21 +35,121 @@ import java.util.List;
 @RequestMapping("/api/admin")
 public class AdminRestController {
 
+    private static final String NDJSON_VALUE = "application/x-ndjson";
+
+    private static final String CSV_VALUE = "text/csv";
+
     private final UserService userService;
 
-    public AdminRestController(UserService userService) {
+    private final UserImportService userImportService;
+
+    private final UserDtoReader userDtoReader;
+
+    private final UserDataVersion userDataVersion;
+
+    private final UserJsonCache userJsonCache;
+
+    private final ObjectMapper objectMapper;
+
+    private final UserEventBroadcaster userEventBroadcaster;
+
+    public AdminRestController(UserService userService,
+                               UserImportService userImportService,
+                               UserDtoReader userDtoReader,
+                               UserDataVersion userDataVersion,
+                               UserJsonCache userJsonCache,
+                               ObjectMapper objectMapper,
+                               UserEventBroadcaster userEventBroadcaster) {
         this.userService = userService;
+        this.userImportService = userImportService;
+        this.userDtoReader = userDtoReader;
+        this.userDataVersion = userDataVersion;
+        this.userJsonCache = userJsonCache;
+        this.objectMapper = objectMapper;
+        this.userEventBroadcaster = userEventBroadcaster;
     }
 
+    /**
+     * Текущий пользователь.
+     * Ответ содержит ETag; при совпадении If-None-Match возвращается 304 без запроса к базе данных.
+     * JSON берется из UserJsonCache: одновременные запросы выполняют один запрос к базе данных.
+     */
     @GetMapping("/current-user")
-    public User getCurrentUser(Principal principal) {
-        return userService.findByEmail(principal.getName());
+    public ResponseEntity<byte[]> getCurrentUser(Principal principal, WebRequest request) {
+        String etag = userDataVersion.etagForUser(principal.getName());
+        if (request.checkNotModified(etag)) {
+            return null;
+        }
+        return ResponseEntity.ok()
+                .cacheControl(CacheControl.noCache().cachePrivate())
+                .eTag(etag)
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(userJsonCache.currentUser(principal.getName()));
     }
 
+    /**
+     * Страница пользователей с keyset-пагинацией.
+     * Следующая страница запрашивается с afterId, равным id последнего пользователя текущей страницы.
+     * Ответ содержит ETag; при совпадении If-None-Match возвращается 304 без запроса к базе данных.
+     * JSON берется из UserJsonCache: одновременные запросы одной страницы выполняют один запрос к базе данных.
+     */
     @GetMapping("/all-users")
-    public List<User> getAllUsersWithRoles() {
-        return userService.getAllUsersWithRoles().keySet().stream()
-                .toList();
+    public ResponseEntity<byte[]> getAllUsersWithRoles(@RequestParam(defaultValue = "0") Long afterId,
+                                                       @RequestParam(defaultValue = "100") int limit,
+                                                       WebRequest request) {
+        String etag = userDataVersion.etag(afterId, limit);
+        if (request.checkNotModified(etag)) {
+            return null;
+        }
+        return ResponseEntity.ok()
+                .cacheControl(CacheControl.noCache().cachePrivate())
+                .eTag(etag)
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(userJsonCache.usersPage(afterId, limit));
+    }
+
+    /**
+     * Поиск пользователей: q - начало имени, фамилии или email, role, minAge, maxAge.
+     * Страницы запрашиваются так же, как в /all-users: afterId и limit.
+     */
+    @GetMapping("/users/search")
+    public List<UserView> searchUsers(UserSearchFilter filter,
+                                      @RequestParam(defaultValue = "0") Long afterId,
+                                      @RequestParam(defaultValue = "100") int limit) {
+        return userService.searchUsers(filter, afterId, limit);
+    }
+
+    /**
+     * Потоковая выгрузка всех пользователей в формате NDJSON (один JSON-объект на строку).
+     * Выбирается заголовком Accept: application/x-ndjson.
+     */
+    @GetMapping(value = "/all-users", produces = NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamAllUsersWithRoles() {
+        StreamingResponseBody body = outputStream ->
+                userService.streamAllUsersWithRoles(user -> {
+                    try {
+                        outputStream.write(objectMapper.writeValueAsBytes(user));
+                        outputStream.write('\n');
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(NDJSON_VALUE))
+                .body(body);
+    }
+
+    /**
+     * Изменения пользователей (Server-Sent Events): upsert, delete и reset.
+     * При переподключении браузер передает Last-Event-ID, и если события были пропущены,
+     * приходит reset - таблицу нужно загрузить заново.
+     * При первом подключении id можно передать параметром lastEventId
+     * (id, с которым страница получила встроенные данные).
+     */
+    @GetMapping(value = "/users/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter subscribeToUserEvents(@RequestHeader(value = "Last-Event-ID", required = false) String lastEventId,
+                                            @RequestParam(value = "lastEventId", required = false) String pageEventId) {
+        return userEventBroadcaster.subscribe(lastEventId != null ? lastEventId : pageEventId);
     }
 
     @PostMapping("/add")
@@ -38,16 +158,59 @@ public class AdminRestController {
         return ResponseEntity.ok("User added successfully");
     }
 
+    /**
+     * Массовый импорт и обновление пользователей из JSON-массива UserDto.
+     * Тело запроса читается потоком, записи сохраняются порциями.
+     */
+    @PostMapping(value = "/users/bulk", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public BulkImportResult importUsersFromJson(InputStream body) throws IOException {
+        try (MappingIterator<UserDto> rows = userDtoReader.readJson(body)) {
+            return userImportService.importUsers(rows);
+        }
+    }
+
+    /**
+     * Массовый импорт и обновление пользователей из CSV с заголовком
+     * (id,firstname,lastname,age,email,password,roles), роли через ";".
+     */
+    @PostMapping(value = "/users/bulk", consumes = CSV_VALUE)
+    public BulkImportResult importUsersFromCsv(InputStream body) throws IOException {
+        try (MappingIterator<UserDto> rows = userDtoReader.readCsv(body)) {
+            return userImportService.importUsers(rows);
+        }
+    }
+
     @PutMapping("/update")
     public ResponseEntity<String> updateUser(@RequestBody UserDto userDto) {
         userService.updateUserWithRoles(userDto);
         return ResponseEntity.ok("User updated successfully");
     }
 
+    /**
+     * Частичное изменение пользователя: изменяются только переданные поля.
+     * version - версия из UserView; если пользователя уже изменили, ответ 409 Conflict
+     * (RestExceptionHandler), и клиент должен перечитать пользователя.
+     *
+     * @return пользователь после изменения, с новой версией.
+     */
+    @PatchMapping("/users/{id}")
+    public UserView patchUser(@PathVariable Long id, @Valid @RequestBody UserPatchDto patch) {
+        return userService.patchUser(id, patch);
+    }
+
     @DeleteMapping("/delete")
     public ResponseEntity<String> deleteUser(@RequestBody UserDto userDto) {
         userService.delete(userDto.getId());
         return ResponseEntity.ok("User deleted successfully");
     }
 
+    /**
+     * Массовое удаление пользователей по JSON-массиву id.
+     * Несуществующие и уже удаленные id пропускаются.
+     */
+    @DeleteMapping(value = "/users", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public BulkDeleteResult deleteUsers(@RequestBody List<Long> ids) {
+        return new BulkDeleteResult(ids.size(), userService.deleteAll(ids));
+    }
+
 }
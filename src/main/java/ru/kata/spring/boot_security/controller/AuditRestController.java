@@ -0,0 +1,33 @@
+package ru.kata.spring.boot_security.controller;
+
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import ru.kata.spring.boot_security.dto.AuditRecordView;
+import ru.kata.spring.boot_security.service.AuditService;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/admin/audit")
+public class AuditRestController {
+
+    private final AuditService auditService;
+
+    public AuditRestController(AuditService auditService) {
+        this.auditService = auditService;
+    }
+
+    /**
+     * Журнал аудита изменений пользователей, от новых записей к старым.
+     * Следующая страница запрашивается с beforeId, равным id последней записи текущей страницы.
+     */
+    @GetMapping
+    public List<AuditRecordView> getAuditRecords(@RequestParam(required = false) Long beforeId,
+                                                 @RequestParam(required = false) Long userId,
+                                                 @RequestParam(defaultValue = "100") int limit) {
+        return auditService.getAuditRecords(beforeId, userId, limit);
+    }
+
+}
@@ -0,0 +1,42 @@
+package ru.kata.spring.boot_security.controller;
+
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+
+/**
+ * Ответы REST API на ошибки изменения пользователей.
+ */
+@RestControllerAdvice(annotations = RestController.class)
+public class RestExceptionHandler {
+
+    /**
+     * Пользователя изменили после того, как клиент его прочитал (версия не совпала
+     * или одновременная транзакция успела раньше). Изменения не применены.
+     */
+    @ExceptionHandler(ObjectOptimisticLockingFailureException.class)
+    public ResponseEntity<String> handleConflict(ObjectOptimisticLockingFailureException e) {
+        return ResponseEntity.status(HttpStatus.CONFLICT)
+                .body("User was modified by another request, reload it and retry");
+    }
+
+    /**
+     * Изменение нарушает ограничение базы данных: email уже занят другим пользователем.
+     */
+    @ExceptionHandler(DataIntegrityViolationException.class)
+    public ResponseEntity<String> handleDuplicate(DataIntegrityViolationException e) {
+        return ResponseEntity.status(HttpStatus.CONFLICT)
+                .body("User with this email already exists");
+    }
+
+    @ExceptionHandler(EmptyResultDataAccessException.class)
+    public ResponseEntity<String> handleNotFound(EmptyResultDataAccessException e) {
+        return ResponseEntity.status(HttpStatus.NOT_FOUND).body("User not found");
+    }
+
+}
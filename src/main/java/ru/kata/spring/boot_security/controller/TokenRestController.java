@@ -0,0 +1,31 @@
+package ru.kata.spring.boot_security.controller;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.security.core.Authentication;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import ru.kata.spring.boot_security.dto.TokenResponse;
+import ru.kata.spring.boot_security.service.TokenService;
+
+/**
+ * Выдача токена клиентам REST API в режиме без HTTP-сессий.
+ * Клиент аутентифицируется по HTTP Basic и дальше передает токен в заголовке Authorization: Bearer.
+ */
+@RestController
+@RequestMapping("/api/token")
+@ConditionalOnProperty(name = "app.security.token.enabled", havingValue = "true")
+public class TokenRestController {
+
+    private final TokenService tokenService;
+
+    public TokenRestController(TokenService tokenService) {
+        this.tokenService = tokenService;
+    }
+
+    @PostMapping
+    public TokenResponse issueToken(Authentication authentication) {
+        return new TokenResponse(tokenService.issue(authentication), tokenService.getTtl().toSeconds());
+    }
+
+}
@@ -1,17 +1,48 @@
 package ru.kata.spring.boot_security.controller;
 
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.security.web.csrf.CsrfToken;
 import org.springframework.stereotype.Controller;
+import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.context.request.WebRequest;
+import ru.kata.spring.boot_security.cache.UserJsonCache;
+import ru.kata.spring.boot_security.cache.UserDataVersion;
+
+import javax.servlet.http.HttpServletResponse;
+import java.nio.charset.StandardCharsets;
+import java.security.Principal;
 
 @Controller
 @RequestMapping("/user")
 public class UserController {
 
+    private final UserDataVersion userDataVersion;
+
+    private final UserJsonCache userJsonCache;
+
+    public UserController(UserDataVersion userDataVersion,
+                          UserJsonCache userJsonCache) {
+        this.userDataVersion = userDataVersion;
+        this.userJsonCache = userJsonCache;
+    }
+
+    /**
+     * Страница пользователя с встроенными данными текущего пользователя (JSON island).
+     * Ответ содержит ETag; при совпадении If-None-Match возвращается 304 без отрисовки шаблона.
+     */
     @GetMapping
-    public String showUserPage() {
+    public String showUserPage(Principal principal, CsrfToken csrfToken, WebRequest request,
+                               HttpServletResponse response, Model model) {
+        String email = principal.getName();
+        if (request.checkNotModified(userDataVersion.etagForPage("user", email, csrfToken.getToken()))) {
+            return null;
+        }
+        response.setHeader(HttpHeaders.CACHE_CONTROL, CacheControl.noCache().cachePrivate().getHeaderValue());
+        model.addAttribute("currentUserJson", new String(userJsonCache.currentUser(email), StandardCharsets.UTF_8));
         return "userPage";
     }
 
 }
-
@@ -1,10 +1,14 @@
 package ru.kata.spring.boot_security.controller;
 
+import org.springframework.http.CacheControl;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
-import ru.kata.spring.boot_security.service.UserService;
-import ru.kata.spring.boot_security.model.User;
+import org.springframework.web.context.request.WebRequest;
+import ru.kata.spring.boot_security.cache.UserDataVersion;
+import ru.kata.spring.boot_security.cache.UserJsonCache;
 
 import java.security.Principal;
 
@@ -12,14 +16,31 @@ import java.security.Principal;
 @RequestMapping("/api/user")
 public class UserRestController {
 
-    private final UserService userService;
+    private final UserDataVersion userDataVersion;
 
-    public UserRestController(UserService userService) {
-        this.userService = userService;
+    private final UserJsonCache userJsonCache;
+
+    public UserRestController(UserDataVersion userDataVersion,
+                              UserJsonCache userJsonCache) {
+        this.userDataVersion = userDataVersion;
+        this.userJsonCache = userJsonCache;
     }
 
+    /**
+     * Текущий пользователь.
+     * Ответ содержит ETag; при совпадении If-None-Match возвращается 304 без запроса к базе данных.
+     * JSON берется из UserJsonCache: одновременные запросы выполняют один запрос к базе данных.
+     */
     @GetMapping("/current")
-    public User getCurrentUser(Principal principal) {
-        return userService.findByEmail(principal.getName());
+    public ResponseEntity<byte[]> getCurrentUser(Principal principal, WebRequest request) {
+        String etag = userDataVersion.etagForUser(principal.getName());
+        if (request.checkNotModified(etag)) {
+            return null;
+        }
+        return ResponseEntity.ok()
+                .cacheControl(CacheControl.noCache().cachePrivate())
+                .eTag(etag)
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(userJsonCache.currentUser(principal.getName()));
     }
-}
\ No newline at end of file
+}
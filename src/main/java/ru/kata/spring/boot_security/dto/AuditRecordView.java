@@ -0,0 +1,17 @@
+package ru.kata.spring.boot_security.dto;
+
+import ru.kata.spring.boot_security.event.UserChangedEvent;
+
+import java.time.Instant;
+
+/**
+ * Запись журнала аудита для ответа REST API.
+ */
+public record AuditRecordView(Long id,
+                              Instant occurredAt,
+                              String actor,
+                              UserChangedEvent.Type action,
+                              Long userId,
+                              String email,
+                              String previousEmail) {
+}
@@ -0,0 +1,10 @@
+package ru.kata.spring.boot_security.dto;
+
+/**
+ * Результат массового удаления пользователей.
+ *
+ * @param requested количество переданных id.
+ * @param deleted   количество удаленных пользователей.
+ */
+public record BulkDeleteResult(int requested, int deleted) {
+}
@@ -0,0 +1,52 @@
+package ru.kata.spring.boot_security.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Результат массового импорта пользователей: количество обработанных строк
+ * и ошибки по каждой отклоненной строке.
+ */
+@Setter
+@Getter
+@NoArgsConstructor
+public class BulkImportResult {
+
+    private int total;
+
+    private int created;
+
+    private int updated;
+
+    private List<RowError> errors = new ArrayList<>();
+
+    public int getFailed() {
+        return errors.size();
+    }
+
+    public void addError(int row, String email, String message) {
+        errors.add(new RowError(row, email, message));
+    }
+
+    /**
+     * Ошибка строки импорта.
+     * Номер строки считается с 1 по порядку записей во входных данных.
+     */
+    @Getter
+    @AllArgsConstructor
+    public static class RowError {
+
+        private final int row;
+
+        private final String email;
+
+        private final String message;
+
+    }
+
+}
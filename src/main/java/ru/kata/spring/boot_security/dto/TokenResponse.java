@@ -0,0 +1,10 @@
+package ru.kata.spring.boot_security.dto;
+
+/**
+ * Ответ на запрос токена.
+ *
+ * @param expiresIn время жизни токена в секундах.
+ */
+public record TokenResponse(String token,
+                            long expiresIn) {
+}
@@ -1,10 +1,17 @@
 package ru.kata.spring.boot_security.dto;
 
+import com.fasterxml.jackson.annotation.JsonProperty;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
 
+import javax.validation.constraints.Email;
+import javax.validation.constraints.Max;
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotBlank;
+import javax.validation.constraints.NotNull;
+import javax.validation.constraints.Size;
 import java.util.Set;
 
 @Setter
@@ -14,11 +21,31 @@ import java.util.Set;
 public class UserDto {
 
     private Long id;
+
+    @NotBlank
+    @Size(max = 255)
     private String firstname;
+
+    @NotBlank
+    @Size(max = 255)
     private String lastname;
+
+    @NotNull
+    @Min(0)
+    @Max(150)
     private Integer age;
+
+    @NotBlank
+    @Email
+    @Size(max = 255)
     private String email;
+
+    /**
+     * Пароль принимается в запросах, но никогда не отдается в ответах.
+     */
+    @JsonProperty(access = JsonProperty.Access.WRITE_ONLY)
     private String password;
+
     private Set<RoleDto> roles;
 
 }
@@ -0,0 +1,57 @@
+package ru.kata.spring.boot_security.dto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import javax.validation.constraints.Email;
+import javax.validation.constraints.Max;
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+import javax.validation.constraints.Pattern;
+import javax.validation.constraints.Size;
+import java.util.Set;
+
+/**
+ * Частичное изменение пользователя (PATCH /api/admin/users/{id}).
+ * Поля со значением null не изменяются.
+ * version - версия пользователя, которую видел клиент (UserView.version);
+ * если пользователя уже изменили, запрос отклоняется с 409 Conflict.
+ */
+@Setter
+@Getter
+@AllArgsConstructor
+@NoArgsConstructor
+public class UserPatchDto {
+
+    @Pattern(regexp = ".*\\S.*")
+    @Size(max = 255)
+    private String firstname;
+
+    @Pattern(regexp = ".*\\S.*")
+    @Size(max = 255)
+    private String lastname;
+
+    @Min(0)
+    @Max(150)
+    private Integer age;
+
+    @Email
+    @Pattern(regexp = ".*\\S.*")
+    @Size(max = 255)
+    private String email;
+
+    /**
+     * Новый пароль; пустая строка, как и null, оставляет пароль без изменений.
+     */
+    @JsonProperty(access = JsonProperty.Access.WRITE_ONLY)
+    private String password;
+
+    private Set<RoleDto> roles;
+
+    @NotNull
+    private Long version;
+
+}
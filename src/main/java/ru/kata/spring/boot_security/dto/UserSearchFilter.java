@@ -0,0 +1,33 @@
+package ru.kata.spring.boot_security.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.ToString;
+
+/**
+ * Параметры поиска пользователей. Пустые параметры не ограничивают результат.
+ */
+@Setter
+@Getter
+@ToString
+@NoArgsConstructor
+@AllArgsConstructor
+public class UserSearchFilter {
+
+    /**
+     * Начало имени, фамилии или email.
+     */
+    private String q;
+
+    /**
+     * Имя роли, с префиксом "ROLE_" или без него.
+     */
+    private String role;
+
+    private Integer minAge;
+
+    private Integer maxAge;
+
+}
@@ -0,0 +1,19 @@
+package ru.kata.spring.boot_security.dto;
+
+import java.util.List;
+
+/**
+ * Модель пользователя для ответов REST API на чтение.
+ * Собирается из проекций UserRoleRow, без загрузки сущности User.
+ *
+ * @param roles   имена ролей без префикса "ROLE_", по алфавиту.
+ * @param version версия пользователя, передается в PATCH /api/admin/users/{id}.
+ */
+public record UserView(Long id,
+                       String firstname,
+                       String lastname,
+                       Integer age,
+                       String email,
+                       List<String> roles,
+                       Long version) {
+}
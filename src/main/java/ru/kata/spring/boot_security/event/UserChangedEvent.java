@@ -0,0 +1,35 @@
+package ru.kata.spring.boot_security.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * Событие изменения пользователя, публикуется UserServiceImp при добавлении,
+ * обновлении и удалении пользователя.
+ * Слушатели, которым важна согласованность с базой данных,
+ * обрабатывают его после коммита транзакции (@TransactionalEventListener).
+ */
+@Getter
+@ToString
+@AllArgsConstructor
+public class UserChangedEvent {
+
+    public enum Type {
+        CREATED,
+        UPDATED,
+        DELETED
+    }
+
+    private final Type type;
+
+    private final Long userId;
+
+    private final String email;
+
+    /**
+     * Email пользователя до изменения, если он был изменен, иначе null.
+     */
+    private final String previousEmail;
+
+}
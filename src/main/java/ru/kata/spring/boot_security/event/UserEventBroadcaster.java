@@ -0,0 +1,241 @@
+package ru.kata.spring.boot_security.event;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import ru.kata.spring.boot_security.dto.UserView;
+import ru.kata.spring.boot_security.service.UserService;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Рассылка изменений пользователей подписчикам (страницам администратора) через Server-Sent Events.
+ * События UserChangedEvent после коммита собираются в пакеты; для пакета одним запросом читаются
+ * актуальные данные пользователей, и подписчики получают только изменившиеся строки:
+ * событие upsert (UserView) или delete ({"id": ...}).
+ * <p>
+ * У каждого подписчика своя ограниченная очередь, события отправляются из пула потоков.
+ * Если подписчик не успевает читать и очередь заполнена, подписка закрывается;
+ * браузер переподключается, получает событие reset и перезагружает таблицу целиком.
+ * Каждое событие имеет id (метка запуска и номер пакета). По заголовку Last-Event-ID
+ * при переподключении проверяется, были ли пропущены события.
+ * <p>
+ * Данные пакета читаются с основной базы данных (транзакция transactionTemplate не только
+ * для чтения): реплика может еще не получить изменение, и подписчики получили бы старую строку
+ * или delete вместо upsert нового пользователя.
+ */
+@Component
+public class UserEventBroadcaster {
+
+    public static final String UPSERT_EVENT = "upsert";
+
+    public static final String DELETE_EVENT = "delete";
+
+    public static final String RESET_EVENT = "reset";
+
+    public static final String READY_EVENT = "ready";
+
+    private static final int MAX_BATCH_SIZE = 500;
+
+    private final UserService userService;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final int bufferSize;
+
+    private final long timeoutMillis;
+
+    private final ExecutorService executor;
+
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+
+    private final Queue<UserChangedEvent> pending = new ConcurrentLinkedQueue<>();
+
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+
+    private final String epoch = Long.toString(System.currentTimeMillis(), 36);
+
+    private final AtomicLong sequence = new AtomicLong();
+
+    public UserEventBroadcaster(UserService userService,
+                                TransactionTemplate transactionTemplate,
+                                @Value("${app.admin.events.buffer-size:256}") int bufferSize,
+                                @Value("${app.admin.events.timeout:30m}") Duration timeout,
+                                @Value("${app.admin.events.threads:2}") int threads) {
+        this.userService = userService;
+        this.transactionTemplate = transactionTemplate;
+        this.bufferSize = bufferSize;
+        this.timeoutMillis = timeout.toMillis();
+        this.executor = Executors.newFixedThreadPool(threads, new CustomizableThreadFactory("user-events-"));
+    }
+
+    /**
+     * Новая подписка. Первым отправляется событие ready с id текущего пакета, а если клиент
+     * переподключается (lastEventId не null) и пропустил события, то событие reset.
+     */
+    public SseEmitter subscribe(String lastEventId) {
+        SseEmitter emitter = new SseEmitter(timeoutMillis);
+        Subscriber subscriber = new Subscriber(emitter);
+        emitter.onCompletion(() -> subscribers.remove(subscriber));
+        emitter.onTimeout(() -> subscribers.remove(subscriber));
+        emitter.onError(error -> subscribers.remove(subscriber));
+        subscribers.add(subscriber);
+        String eventId = currentEventId();
+        String name = lastEventId != null && !lastEventId.equals(eventId) ? RESET_EVENT : READY_EVENT;
+        subscriber.offer(List.of(new Event(eventId, name, "")));
+        return emitter;
+    }
+
+    public int getSubscriberCount() {
+        return subscribers.size();
+    }
+
+    /**
+     * Если подписчиков нет, событие только увеличивает номер пакета:
+     * подписчик, пришедший позже с прежним id, получит reset.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onUserChanged(UserChangedEvent event) {
+        if (subscribers.isEmpty()) {
+            sequence.incrementAndGet();
+            return;
+        }
+        pending.add(event);
+        scheduleFlush();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+        subscribers.forEach(subscriber -> subscriber.emitter.complete());
+    }
+
+    private void scheduleFlush() {
+        if (flushScheduled.compareAndSet(false, true)) {
+            executor.execute(this::flush);
+        }
+    }
+
+    /**
+     * Собирает накопившиеся изменения в пакет: для каждого пользователя учитывается последнее изменение.
+     */
+    private void flush() {
+        try {
+            Map<Long, UserChangedEvent.Type> changes = new LinkedHashMap<>();
+            UserChangedEvent event;
+            while (changes.size() < MAX_BATCH_SIZE && (event = pending.poll()) != null) {
+                changes.put(event.getUserId(), event.getType());
+            }
+            if (!changes.isEmpty()) {
+                broadcast(changes);
+            }
+        } finally {
+            flushScheduled.set(false);
+            if (!pending.isEmpty()) {
+                scheduleFlush();
+            }
+        }
+    }
+
+    private void broadcast(Map<Long, UserChangedEvent.Type> changes) {
+        List<Long> changedIds = new ArrayList<>();
+        changes.forEach((id, type) -> {
+            if (type != UserChangedEvent.Type.DELETED) {
+                changedIds.add(id);
+            }
+        });
+        Map<Long, UserView> views = new HashMap<>();
+        List<UserView> changedViews = transactionTemplate.execute(status -> userService.findViewsByIds(changedIds));
+        for (UserView view : changedViews) {
+            views.put(view.id(), view);
+        }
+        String eventId = epoch + "-" + sequence.incrementAndGet();
+        List<Event> events = new ArrayList<>(changes.size());
+        for (Long id : changes.keySet()) {
+            UserView view = views.get(id);
+            events.add(view != null
+                    ? new Event(eventId, UPSERT_EVENT, view)
+                    : new Event(eventId, DELETE_EVENT, Map.of("id", id)));
+        }
+        subscribers.forEach(subscriber -> subscriber.offer(events));
+    }
+
+    /**
+     * Id последнего отправленного пакета. Страница, получившая данные вместе с этим id,
+     * передает его при подписке и получает reset, если данные успели измениться.
+     */
+    public String currentEventId() {
+        return epoch + "-" + sequence.get();
+    }
+
+    private final class Subscriber {
+
+        private final SseEmitter emitter;
+
+        private final BlockingQueue<Event> queue = new ArrayBlockingQueue<>(bufferSize);
+
+        private final AtomicBoolean draining = new AtomicBoolean();
+
+        private Subscriber(SseEmitter emitter) {
+            this.emitter = emitter;
+        }
+
+        /**
+         * Ставит события в очередь подписчика; при переполнении очереди подписка закрывается.
+         */
+        private void offer(List<Event> events) {
+            for (Event event : events) {
+                if (!queue.offer(event)) {
+                    drop();
+                    return;
+                }
+            }
+            if (draining.compareAndSet(false, true)) {
+                executor.execute(this::drain);
+            }
+        }
+
+        private void drain() {
+            try {
+                Event event;
+                while ((event = queue.poll()) != null) {
+                    emitter.send(SseEmitter.event()
+                            .id(event.id())
+                            .name(event.name())
+                            .data(event.data(), MediaType.APPLICATION_JSON));
+                }
+            } catch (IOException | IllegalStateException e) {
+                drop();
+            } finally {
+                draining.set(false);
+                if (!queue.isEmpty() && subscribers.contains(this) && draining.compareAndSet(false, true)) {
+                    executor.execute(this::drain);
+                }
+            }
+        }
+
+        private void drop() {
+            subscribers.remove(this);
+            queue.clear();
+            emitter.complete();
+        }
+    }
+
+    /**
+     * Событие для отправки. SseEventBuilder изменяется при отправке,
+     * поэтому он создается для каждого подписчика отдельно.
+     */
+    private record Event(String id, String name, Object data) {
+    }
+
+}
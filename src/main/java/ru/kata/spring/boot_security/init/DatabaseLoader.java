@@ -1,51 +1,85 @@
 package ru.kata.spring.boot_security;
 
-import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.boot.CommandLineRunner;
-import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
 import ru.kata.spring.boot_security.model.Role;
 import ru.kata.spring.boot_security.model.User;
 import ru.kata.spring.boot_security.repository.RoleRepository;
 import ru.kata.spring.boot_security.repository.UserRepository;
+import ru.kata.spring.boot_security.service.RoleRegistry;
 
-import javax.annotation.PostConstruct;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 /**
  * Класс для начальной загрузки данных в базу данных при запуске приложения.
+ * Заполнение выполняется после запуска (ApplicationReadyEvent), а не при создании контекста,
+ * и добавляет только отсутствующие роли и пользователей, поэтому повторные запуски
+ * на постоянной схеме (миграции Flyway) ничего не дублируют.
+ * Пароли заданы готовыми хэшами BCrypt, чтобы не хэшировать их при каждом запуске.
+ * Состояние готовности (readiness) приложение публикует после этого события,
+ * поэтому трафик на экземпляр приходит уже после заполнения.
  */
 @Component
 public class DatabaseLoader {
 
-    @Autowired
-    private PasswordEncoder passwordEncoder;
+    /**
+     * BCrypt (strength 10) пароля "admin".
+     */
+    private static final String ADMIN_PASSWORD_HASH = "$2a$10$zYeJSWEtF7RdJdXF4.QkEeRZeA20P60suqwOn80G6tTQE0Gl7UQvC";
+
+    /**
+     * BCrypt (strength 10) пароля "user".
+     */
+    private static final String USER_PASSWORD_HASH = "$2a$10$YdmF9Yn6fFQtShOFBbopbegFWVdF/3MRLp.6j734lNz.PayuOAE7y";
+
+    private static final String ADMIN_EMAIL = "admin@mail.ru";
+
+    private static final String USER_EMAIL = "user@mail.ru";
 
     private final UserRepository userRepository;
 
     private final RoleRepository roleRepository;
 
-    public DatabaseLoader(UserRepository userRepository, RoleRepository roleRepository) {
+    private final RoleRegistry roleRegistry;
+
+    public DatabaseLoader(UserRepository userRepository,
+                          RoleRepository roleRepository,
+                          RoleRegistry roleRegistry) {
         this.userRepository = userRepository;
         this.roleRepository = roleRepository;
+        this.roleRegistry = roleRegistry;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional
+    public void seed() {
+        Role admRole = findOrCreateRole("ROLE_ADMIN");
+        Role userRole = findOrCreateRole("ROLE_USER");
+        this.roleRegistry.refresh();
+
+        Set<String> existingEmails = userRepository.findAllByEmailIn(List.of(ADMIN_EMAIL, USER_EMAIL)).stream()
+                .map(User::getEmail)
+                .collect(Collectors.toSet());
+        if (!existingEmails.contains(ADMIN_EMAIL)) {
+            User admin = new User("admin", "admin", ADMIN_EMAIL, 30, ADMIN_PASSWORD_HASH);
+            admin.setRoles(new HashSet<>(List.of(admRole, userRole)));
+            this.userRepository.save(admin);
+        }
+        if (!existingEmails.contains(USER_EMAIL)) {
+            User user = new User("user", "User", USER_EMAIL, 30, USER_PASSWORD_HASH);
+            user.setRoles(new HashSet<>(List.of(userRole)));
+            this.userRepository.save(user);
+        }
     }
 
-    @PostConstruct
-    private void postConstruct() {
-        Role admRole = new Role("ROLE_ADMIN");
-        Role userRole = new Role("ROLE_USER");
-        this.roleRepository.save(admRole);
-        this.roleRepository.save(userRole);
-        String encodedPassword1 = passwordEncoder.encode("admin");
-        String encodedPassword2 = passwordEncoder.encode("user");
-        User admin = new User("admin", "admin", "admin@mail.ru", 30, encodedPassword1);
-        admin.setRoles(new HashSet<>(List.of(admRole, userRole)));
-
-        User user = new User("user", "User", "user@mail.ru", 30, encodedPassword2);
-        user.setRoles(new HashSet<>(List.of(userRole)));
-        this.userRepository.save(admin);
-        this.userRepository.save(user);
+    private Role findOrCreateRole(String name) {
+        Role role = roleRepository.findByName(name);
+        return role != null ? role : roleRepository.save(new Role(name));
     }
 
 }
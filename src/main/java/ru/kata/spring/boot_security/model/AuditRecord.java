@@ -0,0 +1,48 @@
+package ru.kata.spring.boot_security.model;
+
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.Immutable;
+import ru.kata.spring.boot_security.event.UserChangedEvent;
+
+import javax.persistence.*;
+import java.time.Instant;
+
+/**
+ * Запись журнала аудита изменений пользователей. Таблица только дополняется:
+ * записи вставляет AuditLogWriter пакетами через JDBC, а не через Hibernate
+ * (с IDENTITY Hibernate не группирует INSERT в JDBC batch).
+ */
+@Getter
+@NoArgsConstructor
+@Immutable
+@Entity
+@Table(name = "audit_log", indexes = @Index(name = "idx_audit_log_user_id", columnList = "user_id, id"))
+public class AuditRecord {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "occurred_at", nullable = false)
+    private Instant occurredAt;
+
+    /**
+     * Имя пользователя, выполнившего изменение, или "system", если изменение выполнено не из запроса.
+     */
+    @Column(nullable = false)
+    private String actor;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 16)
+    private UserChangedEvent.Type action;
+
+    @Column(name = "user_id")
+    private Long userId;
+
+    private String email;
+
+    @Column(name = "previous_email")
+    private String previousEmail;
+
+}
@@ -1,23 +1,37 @@
 package ru.kata.spring.boot_security.model;
 
+import lombok.EqualsAndHashCode;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
-import lombok.Setter;
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.Immutable;
 import org.springframework.security.core.GrantedAuthority;
 
 import javax.persistence.*;
 
-@Setter
+/**
+ * Роли сравниваются по имени: так экземпляры из RoleRegistry совпадают с ролями,
+ * загруженными в коллекцию пользователя, и Hibernate обновляет users_roles только для изменившихся ролей.
+ * Роли не изменяются после создания (@Immutable), поэтому кэшируются только для чтения.
+ */
 @Getter
 @NoArgsConstructor
+@EqualsAndHashCode(onlyExplicitlyIncluded = true)
 @Entity
+@Immutable
+@Cache(usage = CacheConcurrencyStrategy.READ_ONLY, region = Role.CACHE_REGION)
 public class Role implements GrantedAuthority {
 
+    public static final String CACHE_REGION = "roles";
+
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "role_seq")
+    @SequenceGenerator(name = "role_seq", sequenceName = "role_seq", allocationSize = 10)
     private Long id;
 
+    @EqualsAndHashCode.Include
     @Column(name = "role_name", unique = true)
     private String name;
 
@@ -5,32 +5,84 @@ import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
 import lombok.ToString;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.DynamicUpdate;
+import org.hibernate.annotations.NaturalId;
+import org.hibernate.annotations.NaturalIdCache;
+import org.hibernate.annotations.Where;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
 
 import javax.persistence.*;
+import java.time.Instant;
 import java.util.Collection;
 import java.util.HashSet;
 import java.util.Set;
 
+/**
+ * Пользователь. Пользователи, их роли и соответствие email - id хранятся
+ * в кэше второго уровня Hibernate (SecondLevelCacheConfig).
+ * <p>
+ * Индексы поиска по началу имени, фамилии и email начинаются с deleted_at: каждый запрос содержит
+ * условие deleted_at is null (@Where), и вместе с ним начало строки читается одним диапазоном индекса.
+ * Отдельный индекс по deleted_at оптимизатор выбирал бы для этого условия вместо индексов поиска,
+ * а удаленных пользователей DeletedUserPurger находит по началу тех же индексов.
+ */
 @Setter
 @Getter
 @NoArgsConstructor
 @ToString
 @Entity(name = "users")
+@DynamicUpdate
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = User.CACHE_REGION)
+@NaturalIdCache(region = User.NATURAL_ID_CACHE_REGION)
+@Where(clause = "deleted_at is null")
+@Table(name = "users", indexes = {
+        @Index(name = "idx_users_deleted_at_firstname", columnList = "deleted_at, firstname"),
+        @Index(name = "idx_users_deleted_at_lastname_firstname", columnList = "deleted_at, lastname, firstname"),
+        @Index(name = "idx_users_deleted_at_email", columnList = "deleted_at, email"),
+        @Index(name = "idx_users_age", columnList = "age")
+})
 public class User implements UserDetails {
 
+    public static final String CACHE_REGION = "users";
+
+    public static final String NATURAL_ID_CACHE_REGION = "users.natural-id";
+
+    public static final String ROLES_CACHE_REGION = "users.roles";
+
+    /**
+     * Идентификатор выдается пулом из последовательности (таблицы в MySQL),
+     * а не IDENTITY, чтобы Hibernate мог группировать INSERT в JDBC batch.
+     */
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "users_seq")
+    @SequenceGenerator(name = "users_seq", sequenceName = "users_seq", allocationSize = 50)
     private Long id;
 
+    /**
+     * Версия строки, увеличивается Hibernate при каждом обновлении пользователя.
+     * UPDATE выполняется с условием по версии, поэтому одновременное изменение
+     * одного пользователя завершается ObjectOptimisticLockingFailureException, а не потерей изменений.
+     * UPDATE содержит только измененные столбцы (@DynamicUpdate).
+     */
+    @Version
+    private Long version;
+
     private String firstname;
 
     private String lastname;
 
     private Integer age;
 
-    @Column(unique = true)
+    /**
+     * Естественный ключ пользователя: поиск по email (UserRepository.findByEmail)
+     * сначала проверяет кэш natural id и кэш пользователей, а потом обращается к базе данных.
+     * Email изменяемый, Hibernate обновляет кэш natural id при изменении.
+     * Уникальный индекс по email создается для natural id.
+     */
+    @NaturalId(mutable = true)
     private String email;
 
     @JsonIgnore
@@ -42,7 +94,25 @@ public class User implements UserDetails {
     @JsonIgnore
     private boolean enabled;
 
+    /**
+     * Время удаления пользователя. Удаленный пользователь остается в таблице без email
+     * (email сохраняется в журнале аудита) и не виден запросам (@Where),
+     * пока его не удалит DeletedUserPurger.
+     */
+    @JsonIgnore
+    @Column(name = "deleted_at")
+    private Instant deletedAt;
+
+    /**
+     * Индекс (roles_id, users_id) нужен для поиска пользователей по роли:
+     * первичный ключ таблицы связей начинается с users_id.
+     */
     @ManyToMany
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = User.ROLES_CACHE_REGION)
+    @JoinTable(name = "users_roles",
+            joinColumns = @JoinColumn(name = "users_id"),
+            inverseJoinColumns = @JoinColumn(name = "roles_id"),
+            indexes = @Index(name = "idx_users_roles_role_user", columnList = "roles_id, users_id"))
     @ToString.Exclude
     private Set<Role> roles = new HashSet<>();
 
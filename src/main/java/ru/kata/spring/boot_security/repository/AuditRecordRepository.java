@@ -0,0 +1,26 @@
+package ru.kata.spring.boot_security.repository;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import ru.kata.spring.boot_security.dto.AuditRecordView;
+import ru.kata.spring.boot_security.model.AuditRecord;
+
+import java.util.List;
+
+public interface AuditRecordRepository extends JpaRepository<AuditRecord, Long> {
+
+    /**
+     * Страница журнала аудита для keyset-пагинации: записи с id меньше beforeId, от новых к старым.
+     * Если userId не null, только записи этого пользователя.
+     */
+    @Query("select new ru.kata.spring.boot_security.dto.AuditRecordView("
+            + "a.id, a.occurredAt, a.actor, a.action, a.userId, a.email, a.previousEmail)"
+            + " from AuditRecord a where a.id < :beforeId and (:userId is null or a.userId = :userId)"
+            + " order by a.id desc")
+    List<AuditRecordView> findPageBefore(@Param("beforeId") Long beforeId,
+                                         @Param("userId") Long userId,
+                                         Pageable pageable);
+
+}
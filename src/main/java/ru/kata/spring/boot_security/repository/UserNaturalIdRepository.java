@@ -0,0 +1,18 @@
+package ru.kata.spring.boot_security.repository;
+
+import ru.kata.spring.boot_security.model.User;
+
+/**
+ * Поиск пользователя по естественному ключу (email) через кэш второго уровня Hibernate.
+ */
+public interface UserNaturalIdRepository {
+
+    /**
+     * Пользователь по email. Id пользователя берется из кэша natural id, сам пользователь
+     * и его роли - из кэша сущностей и коллекций; к базе данных запрос идет только при промахе.
+     *
+     * @return пользователь или null, если пользователь с таким email не найден.
+     */
+    User findByEmail(String email);
+
+}
@@ -1,10 +1,84 @@
 package ru.kata.spring.boot_security.repository;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import ru.kata.spring.boot_security.model.User;
 
-public interface UserRepository extends JpaRepository<User, Long> {
+import javax.persistence.QueryHint;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Stream;
 
-    User findByEmail(String email);
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
+
+/**
+ * Запросы JPQL и производные запросы видят только неудаленных пользователей (@Where в User).
+ * Удаленных пользователей читают и удаляют только нативные запросы этого репозитория.
+ * <p>
+ * Кэш второго уровня: массовые JPQL UPDATE (markDeleted) очищают области кэша пользователей,
+ * нативные запросы изменения данных - все области кэша, так как Hibernate не знает, какие строки они изменили.
+ */
+public interface UserRepository extends JpaRepository<User, Long>, UserNaturalIdRepository, UserSearchRepository {
+
+    String USER_ROLE_ROWS = "select u.id as id, u.firstname as firstname, u.lastname as lastname,"
+            + " u.age as age, u.email as email, r.name as roleName, u.version as version"
+            + " from users u left join u.roles r";
+
+    List<User> findAllByEmailIn(Collection<String> emails);
+
+    /**
+     * Идентификаторы страницы пользователей для keyset-пагинации:
+     * id больше afterId, по возрастанию. Количество строк задается через pageable.
+     * Лимит применяется в SQL, так как запрос не содержит fetch join коллекции.
+     */
+    @Query("select u.id from users u where u.id > :afterId order by u.id")
+    List<Long> findIdsAfter(@Param("afterId") Long afterId, Pageable pageable);
+
+    /**
+     * Строки "пользователь - роль" пользователей с указанными id, по возрастанию id.
+     */
+    @Query(USER_ROLE_ROWS + " where u.id in :ids order by u.id")
+    List<UserRoleRow> findRowsByIdIn(@Param("ids") Collection<Long> ids);
+
+    /**
+     * Потоковое чтение строк "пользователь - роль" всех пользователей, по возрастанию id.
+     * Строки одного пользователя идут подряд.
+     * Stream должен использоваться внутри транзакции и быть закрыт после чтения.
+     */
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "500"))
+    @Query(USER_ROLE_ROWS + " order by u.id")
+    Stream<UserRoleRow> streamAllRows();
+
+    /**
+     * Помечает пользователей удаленными одним UPDATE, без загрузки ролей и удаления строк users_roles.
+     * Email освобождается (null), чтобы его можно было снова занять до окончательного удаления:
+     * уникальность email проверяется по всей таблице.
+     *
+     * @return количество помеченных пользователей.
+     */
+    @Modifying
+    @Query("update users u set u.deletedAt = :deletedAt, u.email = null, u.enabled = false,"
+            + " u.version = u.version + 1 where u.id in :ids and u.deletedAt is null")
+    int markDeleted(@Param("ids") Collection<Long> ids, @Param("deletedAt") Instant deletedAt);
+
+    /**
+     * Идентификаторы пользователей, удаленных раньше deletedBefore, по возрастанию, не больше limit.
+     */
+    @Query(value = "select id from users where deleted_at < :deletedBefore order by id limit :limit",
+            nativeQuery = true)
+    List<Long> findDeletedIdsBefore(@Param("deletedBefore") Instant deletedBefore, @Param("limit") int limit);
+
+    @Modifying
+    @Query(value = "delete from users_roles where users_id in :ids", nativeQuery = true)
+    int deleteRolesByUserIdIn(@Param("ids") Collection<Long> ids);
+
+    @Modifying
+    @Query(value = "delete from users where id in :ids and deleted_at is not null", nativeQuery = true)
+    int deleteDeletedByIdIn(@Param("ids") Collection<Long> ids);
 
 }
@@ -0,0 +1,23 @@
+package ru.kata.spring.boot_security.repository;
+
+/**
+ * Проекция строки "пользователь - роль" для запросов чтения.
+ * Пользователь с несколькими ролями дает несколько строк, без ролей - одну строку с roleName = null.
+ */
+public interface UserRoleRow {
+
+    Long getId();
+
+    String getFirstname();
+
+    String getLastname();
+
+    Integer getAge();
+
+    String getEmail();
+
+    String getRoleName();
+
+    Long getVersion();
+
+}
@@ -0,0 +1,18 @@
+package ru.kata.spring.boot_security.repository;
+
+import java.util.List;
+
+/**
+ * Поиск пользователей с условиями, которые строятся только из заданных параметров.
+ */
+public interface UserSearchRepository {
+
+    /**
+     * Идентификаторы страницы результатов поиска для keyset-пагинации:
+     * id больше afterId, по возрастанию, не больше limit.
+     * prefix - шаблон LIKE вида "текст%" (спецсимволы экранированы "!"), сравнивается с началом
+     * имени, фамилии или email. Параметры null не ограничивают результат.
+     */
+    List<Long> searchIds(Long afterId, String prefix, Integer minAge, Integer maxAge, Long roleId, int limit);
+
+}
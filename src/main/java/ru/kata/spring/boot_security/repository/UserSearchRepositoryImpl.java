@@ -0,0 +1,89 @@
+package ru.kata.spring.boot_security.repository;
+
+import org.springframework.transaction.annotation.Transactional;
+import ru.kata.spring.boot_security.model.Role;
+import ru.kata.spring.boot_security.model.User;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Join;
+import javax.persistence.criteria.Predicate;
+import javax.persistence.criteria.Root;
+import javax.persistence.criteria.Subquery;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * Запрос собирается через Criteria API только из заданных условий: условие вида
+ * "параметр is null or ..." оптимизатор не может использовать для выбора индекса.
+ * <p>
+ * Поиск по началу строки выполняется отдельным запросом для каждой колонки
+ * (firstname, lastname, email): каждый запрос читает диапазон своего индекса,
+ * а не обходит первичный ключ с проверкой OR по трем колонкам.
+ * В каждом запросе берутся первые limit подходящих id после afterId, поэтому первые limit id
+ * объединения - это страница результата.
+ */
+@Transactional(readOnly = true)
+public class UserSearchRepositoryImpl implements UserSearchRepository {
+
+    /**
+     * Колонки с индексом, начало которых сравнивается с prefix.
+     */
+    private static final List<String> PREFIX_COLUMNS = List.of("firstname", "lastname", "email");
+
+    private static final char LIKE_ESCAPE = '!';
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public List<Long> searchIds(Long afterId, String prefix, Integer minAge, Integer maxAge, Long roleId, int limit) {
+        if (prefix == null) {
+            return findIds(afterId, null, null, minAge, maxAge, roleId, limit);
+        }
+        TreeSet<Long> ids = new TreeSet<>();
+        for (String column : PREFIX_COLUMNS) {
+            ids.addAll(findIds(afterId, column, prefix, minAge, maxAge, roleId, limit));
+        }
+        return ids.stream().limit(limit).toList();
+    }
+
+    private List<Long> findIds(Long afterId, String column, String prefix,
+                               Integer minAge, Integer maxAge, Long roleId, int limit) {
+        CriteriaBuilder builder = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Long> query = builder.createQuery(Long.class);
+        Root<User> user = query.from(User.class);
+
+        List<Predicate> predicates = new ArrayList<>();
+        predicates.add(builder.greaterThan(user.get("id"), afterId));
+        if (column != null) {
+            predicates.add(builder.like(user.get(column), prefix, LIKE_ESCAPE));
+        }
+        if (minAge != null) {
+            predicates.add(builder.greaterThanOrEqualTo(user.get("age"), minAge));
+        }
+        if (maxAge != null) {
+            predicates.add(builder.lessThanOrEqualTo(user.get("age"), maxAge));
+        }
+        if (roleId != null) {
+            Subquery<Long> withRole = query.subquery(Long.class);
+            Root<User> sameUser = withRole.from(User.class);
+            Join<User, Role> role = sameUser.join("roles");
+            withRole.select(role.get("id"))
+                    .where(builder.equal(sameUser.get("id"), user.get("id")),
+                            builder.equal(role.get("id"), roleId));
+            predicates.add(builder.exists(withRole));
+        }
+
+        query.select(user.get("id"))
+                .where(predicates.toArray(new Predicate[0]))
+                .orderBy(builder.asc(user.get("id")));
+        return entityManager.createQuery(query)
+                .setMaxResults(limit)
+                .getResultList();
+    }
+
+}
@@ -0,0 +1,170 @@
+package ru.kata.spring.boot_security.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import ru.kata.spring.boot_security.event.UserChangedEvent;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Журнал аудита изменений пользователей с отложенной записью.
+ * События UserChangedEvent после коммита попадают в ограниченную очередь без блокировок,
+ * а фоновый поток записывает их в таблицу audit_log пакетами (JDBC batch) -
+ * когда набирается batch-size записей или раз в flush-interval.
+ * Транзакции изменения пользователей не ждут записи аудита. Если очередь заполнена
+ * (база данных недоступна или не успевает), новые записи отбрасываются и учитываются в метриках.
+ */
+@Component
+public class AuditLogWriter {
+
+    public static final String SYSTEM_ACTOR = "system";
+
+    private static final String INSERT_SQL = "insert into audit_log"
+            + " (occurred_at, actor, action, user_id, email, previous_email) values (?, ?, ?, ?, ?, ?)";
+
+    private static final Logger log = LoggerFactory.getLogger(AuditLogWriter.class);
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final int capacity;
+
+    private final int batchSize;
+
+    private final long flushIntervalNanos;
+
+    private final Queue<Entry> queue = new ConcurrentLinkedQueue<>();
+
+    private final AtomicInteger size = new AtomicInteger();
+
+    private final LongAdder writtenCount = new LongAdder();
+
+    private final LongAdder droppedCount = new LongAdder();
+
+    private final Thread writer;
+
+    private volatile boolean running = true;
+
+    public AuditLogWriter(JdbcTemplate jdbcTemplate,
+                          @Value("${app.audit.queue-capacity:10000}") int capacity,
+                          @Value("${app.audit.batch-size:100}") int batchSize,
+                          @Value("${app.audit.flush-interval:500ms}") Duration flushInterval) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.capacity = capacity;
+        this.batchSize = batchSize;
+        this.flushIntervalNanos = flushInterval.toNanos();
+        this.writer = new Thread(this::run, "audit-log-writer");
+        this.writer.setDaemon(true);
+    }
+
+    @PostConstruct
+    public void start() {
+        writer.start();
+    }
+
+    /**
+     * Ставит запись в очередь. Выполняется в потоке, завершившем транзакцию,
+     * поэтому автор изменения берется из текущего SecurityContext.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onUserChanged(UserChangedEvent event) {
+        if (size.incrementAndGet() > capacity) {
+            size.decrementAndGet();
+            droppedCount.increment();
+            return;
+        }
+        queue.add(new Entry(Instant.now(), currentActor(), event));
+        if (size.get() >= batchSize) {
+            LockSupport.unpark(writer);
+        }
+    }
+
+    /**
+     * Записывает оставшиеся в очереди записи и останавливает фоновый поток.
+     */
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        running = false;
+        LockSupport.unpark(writer);
+        writer.join(TimeUnit.SECONDS.toMillis(10));
+    }
+
+    public int getQueueSize() {
+        return size.get();
+    }
+
+    public long getWrittenCount() {
+        return writtenCount.sum();
+    }
+
+    public long getDroppedCount() {
+        return droppedCount.sum();
+    }
+
+    private void run() {
+        while (running) {
+            if (size.get() < batchSize) {
+                LockSupport.parkNanos(this, flushIntervalNanos);
+            }
+            flush();
+        }
+        flush();
+    }
+
+    private void flush() {
+        List<Entry> batch;
+        while (!(batch = poll()).isEmpty()) {
+            try {
+                jdbcTemplate.batchUpdate(INSERT_SQL, batch, batch.size(), (statement, entry) -> {
+                    statement.setTimestamp(1, Timestamp.from(entry.occurredAt()));
+                    statement.setString(2, entry.actor());
+                    statement.setString(3, entry.event().getType().name());
+                    statement.setObject(4, entry.event().getUserId());
+                    statement.setString(5, entry.event().getEmail());
+                    statement.setString(6, entry.event().getPreviousEmail());
+                });
+                writtenCount.add(batch.size());
+            } catch (DataAccessException e) {
+                droppedCount.add(batch.size());
+                log.warn("Failed to write {} audit records", batch.size(), e);
+            }
+        }
+    }
+
+    private List<Entry> poll() {
+        List<Entry> batch = new ArrayList<>(Math.min(batchSize, Math.max(size.get(), 1)));
+        Entry entry;
+        while (batch.size() < batchSize && (entry = queue.poll()) != null) {
+            batch.add(entry);
+        }
+        size.addAndGet(-batch.size());
+        return batch;
+    }
+
+    private static String currentActor() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        return authentication != null ? authentication.getName() : SYSTEM_ACTOR;
+    }
+
+    private record Entry(Instant occurredAt, String actor, UserChangedEvent event) {
+    }
+
+}
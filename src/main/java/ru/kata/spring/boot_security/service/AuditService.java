@@ -0,0 +1,11 @@
+package ru.kata.spring.boot_security.service;
+
+import ru.kata.spring.boot_security.dto.AuditRecordView;
+
+import java.util.List;
+
+public interface AuditService {
+
+    List<AuditRecordView> getAuditRecords(Long beforeId, Long userId, int limit);
+
+}
@@ -0,0 +1,42 @@
+package ru.kata.spring.boot_security.service;
+
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import ru.kata.spring.boot_security.dto.AuditRecordView;
+import ru.kata.spring.boot_security.repository.AuditRecordRepository;
+
+import java.util.List;
+
+@Service
+public class AuditServiceImp implements AuditService {
+
+    /**
+     * Максимальный размер страницы журнала аудита.
+     */
+    public static final int MAX_PAGE_SIZE = 500;
+
+    private final AuditRecordRepository auditRecordRepository;
+
+    public AuditServiceImp(AuditRecordRepository auditRecordRepository) {
+        this.auditRecordRepository = auditRecordRepository;
+    }
+
+    /**
+     * Страница журнала аудита от новых записей к старым (keyset-пагинация по id).
+     *
+     * @param beforeId id последней записи предыдущей страницы (null - с самой новой записи).
+     * @param userId   если не null, только записи об этом пользователе.
+     * @param limit    размер страницы, ограничивается значением MAX_PAGE_SIZE.
+     */
+    @Transactional(readOnly = true)
+    @Override
+    public List<AuditRecordView> getAuditRecords(Long beforeId, Long userId, int limit) {
+        int pageSize = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+        return auditRecordRepository.findPageBefore(
+                beforeId == null ? Long.MAX_VALUE : beforeId,
+                userId,
+                PageRequest.of(0, pageSize));
+    }
+
+}
@@ -0,0 +1,81 @@
+package ru.kata.spring.boot_security.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.kata.spring.boot_security.repository.UserRepository;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Окончательное удаление пользователей, помеченных удаленными (User.deletedAt).
+ * Запускается по расписанию app.users.purge.cron (по умолчанию ночью, вне часов нагрузки)
+ * и удаляет пользователей, удаленных раньше чем retention назад, порциями по batch-size.
+ * Каждая порция - отдельная короткая транзакция, между порциями пауза pause,
+ * чтобы удаление не держало блокировки users и users_roles долго.
+ */
+@Component
+public class DeletedUserPurger {
+
+    private static final Logger log = LoggerFactory.getLogger(DeletedUserPurger.class);
+
+    private final UserRepository userRepository;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final Duration retention;
+
+    private final int batchSize;
+
+    private final Duration pause;
+
+    public DeletedUserPurger(UserRepository userRepository,
+                             TransactionTemplate transactionTemplate,
+                             @Value("${app.users.purge.retention:1h}") Duration retention,
+                             @Value("${app.users.purge.batch-size:100}") int batchSize,
+                             @Value("${app.users.purge.pause:100ms}") Duration pause) {
+        this.userRepository = userRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.retention = retention;
+        this.batchSize = batchSize;
+        this.pause = pause;
+    }
+
+    @Scheduled(cron = "${app.users.purge.cron:0 */10 1-5 * * *}")
+    public void purgeOnSchedule() throws InterruptedException {
+        int purged = purge(Instant.now().minus(retention));
+        if (purged > 0) {
+            log.info("Purged {} deleted users", purged);
+        }
+    }
+
+    /**
+     * Удаляет пользователей, помеченных удаленными раньше deletedBefore, вместе с их строками users_roles.
+     *
+     * @return количество удаленных пользователей.
+     */
+    public int purge(Instant deletedBefore) throws InterruptedException {
+        int purged = 0;
+        while (true) {
+            List<Long> ids = transactionTemplate.execute(status -> {
+                List<Long> batch = userRepository.findDeletedIdsBefore(deletedBefore, batchSize);
+                if (!batch.isEmpty()) {
+                    userRepository.deleteRolesByUserIdIn(batch);
+                    userRepository.deleteDeletedByIdIn(batch);
+                }
+                return batch;
+            });
+            purged += ids.size();
+            if (ids.size() < batchSize) {
+                return purged;
+            }
+            Thread.sleep(pause.toMillis());
+        }
+    }
+
+}
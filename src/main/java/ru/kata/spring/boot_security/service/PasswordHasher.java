@@ -0,0 +1,148 @@
+package ru.kata.spring.boot_security.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Хэширование паролей (BCrypt) в отдельном ограниченном пуле потоков.
+ * Размер пула по умолчанию равен числу ядер, поэтому одновременные запросы не расходуют
+ * больше CPU, чем есть. Когда очередь пула заполнена, вызывающий поток ждет свободного места
+ * (не дольше submit-timeout), что ограничивает нагрузку при массовых изменениях.
+ */
+@Component
+public class PasswordHasher {
+
+    private final PasswordEncoder passwordEncoder;
+
+    private final ThreadPoolExecutor executor;
+
+    private final LongAdder encodedCount = new LongAdder();
+
+    private final LongAdder encodeNanos = new LongAdder();
+
+    private final LongAdder rejectedCount = new LongAdder();
+
+    public PasswordHasher(PasswordEncoder passwordEncoder,
+                          @Value("${app.security.hashing.threads:0}") int threads,
+                          @Value("${app.security.hashing.queue-capacity:256}") int queueCapacity,
+                          @Value("${app.security.hashing.submit-timeout:10s}") Duration submitTimeout) {
+        this.passwordEncoder = passwordEncoder;
+        int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        long submitTimeoutNanos = submitTimeout.toNanos();
+        this.executor = new ThreadPoolExecutor(poolSize, poolSize,
+                0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                new CustomizableThreadFactory("password-hashing-"),
+                (task, pool) -> {
+                    try {
+                        if (pool.isShutdown() || !pool.getQueue().offer(task, submitTimeoutNanos, TimeUnit.NANOSECONDS)) {
+                            rejectedCount.increment();
+                            throw new RejectedExecutionException("Password hashing queue is full");
+                        }
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new RejectedExecutionException("Interrupted while waiting for password hashing queue", e);
+                    }
+                });
+    }
+
+    /**
+     * Хэширует пароль в пуле и ждет результата.
+     */
+    public String encode(String rawPassword) {
+        return await(submit(rawPassword));
+    }
+
+    /**
+     * Хэширует пароли параллельно на всех потоках пула.
+     *
+     * @return хэши в том же порядке, что и пароли.
+     */
+    public List<String> encodeAll(List<String> rawPasswords) {
+        List<Future<String>> futures = new ArrayList<>(rawPasswords.size());
+        for (String rawPassword : rawPasswords) {
+            futures.add(submit(rawPassword));
+        }
+        List<String> encodedPasswords = new ArrayList<>(futures.size());
+        for (Future<String> future : futures) {
+            encodedPasswords.add(await(future));
+        }
+        return encodedPasswords;
+    }
+
+    /**
+     * Нужно ли хэшировать пароль при обновлении пользователя.
+     * Пустой пароль означает "не менять"; пароль, совпадающий с сохраненным хэшем,
+     * означает, что клиент вернул хэш без изменений.
+     */
+    public boolean isNewPassword(String rawPassword, String encodedPassword) {
+        return rawPassword != null
+                && !rawPassword.isBlank()
+                && !rawPassword.equals(encodedPassword);
+    }
+
+    public int getPoolSize() {
+        return executor.getMaximumPoolSize();
+    }
+
+    public int getActiveCount() {
+        return executor.getActiveCount();
+    }
+
+    public int getQueueSize() {
+        return executor.getQueue().size();
+    }
+
+    public long getEncodedCount() {
+        return encodedCount.sum();
+    }
+
+    public long getEncodeNanos() {
+        return encodeNanos.sum();
+    }
+
+    public long getRejectedCount() {
+        return rejectedCount.sum();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    private Future<String> submit(String rawPassword) {
+        return executor.submit(() -> {
+            long start = System.nanoTime();
+            String encodedPassword = passwordEncoder.encode(rawPassword);
+            encodeNanos.add(System.nanoTime() - start);
+            encodedCount.increment();
+            return encodedPassword;
+        });
+    }
+
+    private static String await(Future<String> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            future.cancel(true);
+            throw new IllegalStateException("Interrupted while hashing password", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IllegalStateException("Password hashing failed", cause);
+        }
+    }
+
+}
@@ -0,0 +1,70 @@
+package ru.kata.spring.boot_security.service;
+
+import org.springframework.stereotype.Component;
+import ru.kata.spring.boot_security.model.Role;
+import ru.kata.spring.boot_security.repository.RoleRepository;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Справочник ролей в памяти.
+ * Роли - небольшой и почти неизменный набор, поэтому они загружаются из базы данных один раз
+ * (после начального заполнения в DatabaseLoader) и дальше ищутся по имени без запросов.
+ * После изменения ролей в базе данных нужно вызвать refresh().
+ */
+@Component
+public class RoleRegistry {
+
+    private static final String ROLE_PREFIX = "ROLE_";
+
+    private final RoleRepository roleRepository;
+
+    /**
+     * Роли по имени без префикса "ROLE_" в верхнем регистре.
+     * Заменяется целиком при обновлении, null - еще не загружены.
+     */
+    private volatile Map<String, Role> rolesByName;
+
+    public RoleRegistry(RoleRepository roleRepository) {
+        this.roleRepository = roleRepository;
+    }
+
+    /**
+     * Перечитывает все роли из базы данных.
+     */
+    public void refresh() {
+        Map<String, Role> roles = new HashMap<>();
+        for (Role role : roleRepository.findAll()) {
+            roles.put(normalize(role.getName()), role);
+        }
+        rolesByName = Map.copyOf(roles);
+    }
+
+    /**
+     * Находит роль по имени.
+     *
+     * @param name имя роли с префиксом "ROLE_" или без него, в любом регистре (например "ADMIN", "Admin").
+     * @return роль или null, если такой роли нет.
+     */
+    public Role findByName(String name) {
+        if (name == null) {
+            return null;
+        }
+        Map<String, Role> roles = rolesByName;
+        if (roles == null) {
+            refresh();
+            roles = rolesByName;
+        }
+        return roles.get(normalize(name));
+    }
+
+    private static String normalize(String name) {
+        String upperCaseName = name.toUpperCase(Locale.ROOT);
+        return upperCaseName.startsWith(ROLE_PREFIX)
+                ? upperCaseName.substring(ROLE_PREFIX.length())
+                : upperCaseName;
+    }
+
+}
@@ -0,0 +1,180 @@
+package ru.kata.spring.boot_security.service;
+
+import com.nimbusds.jose.jwk.source.ImmutableSecret;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.ResponseCookie;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.security.oauth2.core.DelegatingOAuth2TokenValidator;
+import org.springframework.security.oauth2.core.OAuth2Error;
+import org.springframework.security.oauth2.core.OAuth2TokenValidatorResult;
+import org.springframework.security.oauth2.jose.jws.MacAlgorithm;
+import org.springframework.security.oauth2.jwt.*;
+import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationConverter;
+import org.springframework.security.oauth2.server.resource.authentication.JwtGrantedAuthoritiesConverter;
+import org.springframework.security.oauth2.server.resource.web.BearerTokenResolver;
+import org.springframework.security.oauth2.server.resource.web.DefaultBearerTokenResolver;
+import org.springframework.stereotype.Component;
+import org.springframework.web.util.WebUtils;
+import ru.kata.spring.boot_security.cache.TokenRevocationList;
+
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Base64;
+
+/**
+ * Подписанные токены (JWT, HS256) для режима без HTTP-сессий (app.security.token.enabled=true).
+ * Токен содержит email пользователя (sub) и его роли (roles), поэтому запросы проверяются
+ * без обращения к базе данных и без поиска сессии.
+ * Браузер получает токен в cookie (HttpOnly, SameSite=Strict), остальные клиенты
+ * передают его в заголовке Authorization: Bearer.
+ * Ключ задается app.security.token.secret (Base64, не короче 32 байт) и должен совпадать на всех узлах.
+ */
+@Component
+@ConditionalOnProperty(name = "app.security.token.enabled", havingValue = "true")
+public class TokenService {
+
+    public static final String ROLES_CLAIM = "roles";
+
+    private static final Logger log = LoggerFactory.getLogger(TokenService.class);
+
+    private static final int MIN_SECRET_BYTES = 32;
+
+    private final JwtEncoder jwtEncoder;
+
+    private final JwtDecoder jwtDecoder;
+
+    private final Duration ttl;
+
+    private final String cookieName;
+
+    private final boolean cookieSecure;
+
+    private final DefaultBearerTokenResolver headerResolver = new DefaultBearerTokenResolver();
+
+    public TokenService(TokenRevocationList revocationList,
+                        @Value("${app.security.token.secret:}") String secret,
+                        @Value("${app.security.token.ttl:15m}") Duration ttl,
+                        @Value("${app.security.token.cookie-name:access_token}") String cookieName,
+                        @Value("${app.security.token.cookie-secure:false}") boolean cookieSecure) {
+        SecretKey key = new SecretKeySpec(secretBytes(secret), "HmacSHA256");
+        this.jwtEncoder = new NimbusJwtEncoder(new ImmutableSecret<>(key));
+        NimbusJwtDecoder decoder = NimbusJwtDecoder.withSecretKey(key)
+                .macAlgorithm(MacAlgorithm.HS256)
+                .build();
+        decoder.setJwtValidator(new DelegatingOAuth2TokenValidator<>(
+                JwtValidators.createDefault(),
+                jwt -> revocationList.isRevoked(jwt.getSubject(), jwt.getIssuedAt())
+                        ? OAuth2TokenValidatorResult.failure(new OAuth2Error("invalid_token", "Token has been revoked", null))
+                        : OAuth2TokenValidatorResult.success()));
+        this.jwtDecoder = decoder;
+        this.ttl = ttl;
+        this.cookieName = cookieName;
+        this.cookieSecure = cookieSecure;
+    }
+
+    /**
+     * Выпускает токен для аутентифицированного пользователя.
+     */
+    public String issue(Authentication authentication) {
+        Instant now = Instant.now();
+        JwtClaimsSet claims = JwtClaimsSet.builder()
+                .subject(authentication.getName())
+                .issuedAt(now)
+                .expiresAt(now.plus(ttl))
+                .claim(ROLES_CLAIM, new ArrayList<>(AuthorityUtils.authorityListToSet(authentication.getAuthorities())))
+                .build();
+        JwsHeader header = JwsHeader.with(MacAlgorithm.HS256).build();
+        return jwtEncoder.encode(JwtEncoderParameters.from(header, claims)).getTokenValue();
+    }
+
+    public JwtDecoder getJwtDecoder() {
+        return jwtDecoder;
+    }
+
+    /**
+     * Роли берутся из claim roles как есть (с префиксом ROLE_), имя пользователя из sub.
+     */
+    public JwtAuthenticationConverter jwtAuthenticationConverter() {
+        JwtGrantedAuthoritiesConverter authoritiesConverter = new JwtGrantedAuthoritiesConverter();
+        authoritiesConverter.setAuthoritiesClaimName(ROLES_CLAIM);
+        authoritiesConverter.setAuthorityPrefix("");
+        JwtAuthenticationConverter authenticationConverter = new JwtAuthenticationConverter();
+        authenticationConverter.setJwtGrantedAuthoritiesConverter(authoritiesConverter);
+        return authenticationConverter;
+    }
+
+    public Duration getTtl() {
+        return ttl;
+    }
+
+    /**
+     * Берет токен из заголовка Authorization, а если его нет, то из cookie.
+     */
+    public BearerTokenResolver bearerTokenResolver() {
+        return request -> {
+            String token = headerResolver.resolve(request);
+            if (token != null) {
+                return token;
+            }
+            Cookie cookie = WebUtils.getCookie(request, cookieName);
+            return cookie != null && !cookie.getValue().isEmpty() ? cookie.getValue() : null;
+        };
+    }
+
+    public void writeCookie(HttpServletResponse response, String token) {
+        addCookie(response, token, ttl);
+    }
+
+    public void clearCookie(HttpServletResponse response) {
+        addCookie(response, "", Duration.ZERO);
+    }
+
+    public boolean hasCookie(HttpServletRequest request) {
+        return WebUtils.getCookie(request, cookieName) != null;
+    }
+
+    public String getCookieName() {
+        return cookieName;
+    }
+
+    private void addCookie(HttpServletResponse response, String value, Duration maxAge) {
+        ResponseCookie cookie = ResponseCookie.from(cookieName, value)
+                .httpOnly(true)
+                .secure(cookieSecure)
+                .sameSite("Strict")
+                .path("/")
+                .maxAge(maxAge)
+                .build();
+        response.addHeader("Set-Cookie", cookie.toString());
+    }
+
+    /**
+     * Без заданного секрета ключ генерируется при запуске: токены перестают действовать
+     * после перезапуска и не принимаются другими узлами.
+     */
+    private static byte[] secretBytes(String secret) {
+        if (secret.isBlank()) {
+            log.warn("app.security.token.secret is not set, using a random key; tokens will not survive a restart");
+            byte[] bytes = new byte[MIN_SECRET_BYTES];
+            new SecureRandom().nextBytes(bytes);
+            return bytes;
+        }
+        byte[] bytes = Base64.getDecoder().decode(secret);
+        if (bytes.length < MIN_SECRET_BYTES) {
+            throw new IllegalStateException("app.security.token.secret must be at least " + MIN_SECRET_BYTES + " bytes");
+        }
+        return bytes;
+    }
+
+}
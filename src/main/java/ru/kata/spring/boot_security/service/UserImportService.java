@@ -0,0 +1,12 @@
+package ru.kata.spring.boot_security.service;
+
+import ru.kata.spring.boot_security.dto.BulkImportResult;
+import ru.kata.spring.boot_security.dto.UserDto;
+
+import java.util.Iterator;
+
+public interface UserImportService {
+
+    BulkImportResult importUsers(Iterator<UserDto> rows);
+
+}
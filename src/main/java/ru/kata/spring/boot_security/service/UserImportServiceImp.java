@@ -0,0 +1,265 @@
+package ru.kata.spring.boot_security.service;
+
+import io.micrometer.core.annotation.Timed;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.TransactionException;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.kata.spring.boot_security.dto.BulkImportResult;
+import ru.kata.spring.boot_security.dto.RoleDto;
+import ru.kata.spring.boot_security.dto.UserDto;
+import ru.kata.spring.boot_security.event.UserChangedEvent;
+import ru.kata.spring.boot_security.model.Role;
+import ru.kata.spring.boot_security.model.User;
+import ru.kata.spring.boot_security.repository.UserRepository;
+import ru.kata.spring.boot_security.util.UserMapper;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.PersistenceException;
+import javax.validation.ConstraintViolation;
+import javax.validation.Validator;
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Массовый импорт и обновление пользователей.
+ * Строки читаются из итератора по одной и записываются порциями (chunk) по app.bulk.chunk-size,
+ * каждая порция - в отдельной транзакции, INSERT и UPDATE отправляются JDBC batch.
+ * Пароли порции хэшируются параллельно в PasswordHasher до начала транзакции.
+ * Строки без id создают пользователей, строки с id обновляют существующих.
+ * Ошибочные строки не прерывают импорт и возвращаются в BulkImportResult.
+ */
+@Service
+public class UserImportServiceImp implements UserImportService {
+
+    private final UserRepository userRepository;
+
+    private final RoleRegistry roleRegistry;
+
+    private final UserMapper userMapper;
+
+    private final PasswordHasher passwordHasher;
+
+    private final Validator validator;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final ApplicationEventPublisher eventPublisher;
+
+    private final int chunkSize;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    public UserImportServiceImp(UserRepository userRepository,
+                                RoleRegistry roleRegistry,
+                                UserMapper userMapper,
+                                PasswordHasher passwordHasher,
+                                Validator validator,
+                                TransactionTemplate transactionTemplate,
+                                ApplicationEventPublisher eventPublisher,
+                                @Value("${app.bulk.chunk-size:500}") int chunkSize) {
+        this.userRepository = userRepository;
+        this.roleRegistry = roleRegistry;
+        this.userMapper = userMapper;
+        this.passwordHasher = passwordHasher;
+        this.validator = validator;
+        this.transactionTemplate = transactionTemplate;
+        this.eventPublisher = eventPublisher;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Импортирует пользователей.
+     *
+     * @param rows записи в порядке входных данных; ошибка чтения записи
+     *             (RuntimeException из next()) учитывается как ошибка строки.
+     * @return количество созданных и обновленных пользователей и ошибки по строкам.
+     */
+    @Timed(UserServiceImp.USER_SERVICE_TIMER)
+    @Override
+    public BulkImportResult importUsers(Iterator<UserDto> rows) {
+        BulkImportResult result = new BulkImportResult();
+        List<Row> chunk = new ArrayList<>(chunkSize);
+        int rowNumber = 0;
+        while (rows.hasNext()) {
+            rowNumber++;
+            UserDto userDto;
+            try {
+                userDto = rows.next();
+            } catch (RuntimeException e) {
+                result.addError(rowNumber, null, e.getMessage());
+                continue;
+            }
+            String error = validate(userDto);
+            if (error != null) {
+                result.addError(rowNumber, userDto.getEmail(), error);
+                continue;
+            }
+            chunk.add(new Row(rowNumber, userDto));
+            if (chunk.size() == chunkSize) {
+                importChunk(chunk, result);
+                chunk.clear();
+            }
+        }
+        if (!chunk.isEmpty()) {
+            importChunk(chunk, result);
+        }
+        result.setTotal(rowNumber);
+        return result;
+    }
+
+    private String validate(UserDto userDto) {
+        Set<ConstraintViolation<UserDto>> violations = validator.validate(userDto);
+        if (!violations.isEmpty()) {
+            return violations.stream()
+                    .map(violation -> violation.getPropertyPath() + " " + violation.getMessage())
+                    .sorted()
+                    .collect(Collectors.joining(", "));
+        }
+        if (userDto.getId() == null && (userDto.getPassword() == null || userDto.getPassword().isBlank())) {
+            return "password must not be blank for a new user";
+        }
+        if (userDto.getRoles() != null) {
+            for (RoleDto roleDto : userDto.getRoles()) {
+                if (roleRegistry.findByName(roleDto.getName()) == null) {
+                    return "unknown role " + roleDto.getName();
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Записывает порцию строк в одной транзакции.
+     * Если транзакция не удалась, все строки порции считаются ошибочными.
+     */
+    private void importChunk(List<Row> chunk, BulkImportResult result) {
+        encodePasswords(chunk);
+        List<BulkImportResult.RowError> chunkErrors = new ArrayList<>();
+        List<UserChangedEvent> events = new ArrayList<>();
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                writeChunk(chunk, chunkErrors, events);
+                entityManager.flush();
+                entityManager.clear();
+                events.forEach(eventPublisher::publishEvent);
+            });
+        } catch (DataAccessException | PersistenceException | TransactionException e) {
+            chunkErrors.clear();
+            events.clear();
+            String message = "chunk rolled back: " + NestedExceptionUtils.getMostSpecificCause(e).getMessage();
+            chunk.forEach(row -> chunkErrors.add(
+                    new BulkImportResult.RowError(row.number, row.userDto.getEmail(), message)));
+        }
+        result.getErrors().addAll(chunkErrors);
+        for (UserChangedEvent event : events) {
+            if (event.getType() == UserChangedEvent.Type.CREATED) {
+                result.setCreated(result.getCreated() + 1);
+            } else {
+                result.setUpdated(result.getUpdated() + 1);
+            }
+        }
+    }
+
+    private void writeChunk(List<Row> chunk,
+                            List<BulkImportResult.RowError> errors,
+                            List<UserChangedEvent> events) {
+        Map<Long, User> existingById = userRepository.findAllById(chunk.stream()
+                        .map(row -> row.userDto.getId())
+                        .filter(Objects::nonNull)
+                        .toList())
+                .stream()
+                .collect(Collectors.toMap(User::getId, Function.identity()));
+        Map<String, Long> idByEmail = userRepository.findAllByEmailIn(chunk.stream()
+                        .map(row -> row.userDto.getEmail())
+                        .collect(Collectors.toSet()))
+                .stream()
+                .collect(Collectors.toMap(User::getEmail, User::getId));
+
+        List<User> newUsers = new ArrayList<>();
+        for (Row row : chunk) {
+            UserDto userDto = row.userDto;
+            Long ownerId = idByEmail.get(userDto.getEmail());
+            if (ownerId != null && !ownerId.equals(userDto.getId())) {
+                errors.add(new BulkImportResult.RowError(row.number, userDto.getEmail(), "email already exists"));
+                continue;
+            }
+            if (userDto.getId() == null) {
+                User user = userMapper.toModel(userDto);
+                user.setPassword(row.encodedPassword);
+                user.setRoles(resolveRoles(userDto.getRoles()));
+                newUsers.add(user);
+            } else {
+                User user = existingById.get(userDto.getId());
+                if (user == null) {
+                    errors.add(new BulkImportResult.RowError(row.number, userDto.getEmail(), "user not found"));
+                    continue;
+                }
+                String previousEmail = user.getEmail();
+                idByEmail.remove(previousEmail);
+                user.setFirstname(userDto.getFirstname());
+                user.setLastname(userDto.getLastname());
+                user.setAge(userDto.getAge());
+                user.setEmail(userDto.getEmail());
+                if (row.encodedPassword != null
+                        && passwordHasher.isNewPassword(userDto.getPassword(), user.getPassword())) {
+                    user.setPassword(row.encodedPassword);
+                }
+                if (userDto.getRoles() != null) {
+                    user.setRoles(resolveRoles(userDto.getRoles()));
+                }
+                events.add(new UserChangedEvent(UserChangedEvent.Type.UPDATED, user.getId(), user.getEmail(),
+                        previousEmail.equals(user.getEmail()) ? null : previousEmail));
+            }
+            idByEmail.put(userDto.getEmail(), userDto.getId() == null ? -row.number : userDto.getId());
+        }
+        userRepository.saveAll(newUsers);
+        newUsers.forEach(user -> events.add(
+                new UserChangedEvent(UserChangedEvent.Type.CREATED, user.getId(), user.getEmail(), null)));
+    }
+
+    /**
+     * Хэширует заданные пароли строк порции параллельно.
+     */
+    private void encodePasswords(List<Row> chunk) {
+        List<Row> rowsWithPassword = chunk.stream()
+                .filter(row -> row.userDto.getPassword() != null && !row.userDto.getPassword().isBlank())
+                .toList();
+        List<String> encodedPasswords = passwordHasher.encodeAll(rowsWithPassword.stream()
+                .map(row -> row.userDto.getPassword())
+                .toList());
+        for (int i = 0; i < rowsWithPassword.size(); i++) {
+            rowsWithPassword.get(i).encodedPassword = encodedPasswords.get(i);
+        }
+    }
+
+    private Set<Role> resolveRoles(Set<RoleDto> roleDtoSet) {
+        if (roleDtoSet == null) {
+            return new HashSet<>();
+        }
+        return roleDtoSet.stream()
+                .map(roleDto -> roleRegistry.findByName(roleDto.getName()))
+                .collect(Collectors.toSet());
+    }
+
+    private static final class Row {
+
+        private final int number;
+
+        private final UserDto userDto;
+
+        private String encodedPassword;
+
+        private Row(int number, UserDto userDto) {
+            this.number = number;
+            this.userDto = userDto;
+        }
+    }
+
+}
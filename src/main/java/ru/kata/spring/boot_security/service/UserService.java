@@ -1,22 +1,38 @@
 package ru.kata.spring.boot_security.service;
 
 import ru.kata.spring.boot_security.dto.UserDto;
+import ru.kata.spring.boot_security.dto.UserPatchDto;
+import ru.kata.spring.boot_security.dto.UserSearchFilter;
+import ru.kata.spring.boot_security.dto.UserView;
 import ru.kata.spring.boot_security.model.User;
 
+import java.util.Collection;
 import java.util.List;
-import java.util.Map;
+import java.util.function.Consumer;
 
 public interface UserService {
 
 
     void delete(Long id);
 
-    Map<User, List<String>> getAllUsersWithRoles();
+    int deleteAll(Collection<Long> ids);
+
+    List<UserView> getAllUsersWithRoles(Long afterId, int limit);
+
+    List<UserView> searchUsers(UserSearchFilter filter, Long afterId, int limit);
+
+    void streamAllUsersWithRoles(Consumer<UserView> consumer);
 
     void addUserWithRoles(UserDto userDto);
 
     void updateUserWithRoles(UserDto userDto);
 
+    UserView patchUser(Long id, UserPatchDto patch);
+
     User findByEmail(String email);
 
+    UserView findViewByEmail(String email);
+
+    List<UserView> findViewsByIds(Collection<Long> ids);
+
 }
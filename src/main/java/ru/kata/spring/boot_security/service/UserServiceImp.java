@@ -1,53 +1,131 @@
 package ru.kata.spring.boot_security.service;
 
+import io.micrometer.core.annotation.Timed;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.data.domain.Sort;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
-import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
-import ru.kata.spring.boot_security.repository.RoleRepository;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.StringUtils;
 import ru.kata.spring.boot_security.repository.UserRepository;
+import ru.kata.spring.boot_security.repository.UserRoleRow;
 import ru.kata.spring.boot_security.dto.RoleDto;
 import ru.kata.spring.boot_security.dto.UserDto;
+import ru.kata.spring.boot_security.dto.UserPatchDto;
+import ru.kata.spring.boot_security.dto.UserSearchFilter;
+import ru.kata.spring.boot_security.dto.UserView;
+import ru.kata.spring.boot_security.event.UserChangedEvent;
 import ru.kata.spring.boot_security.model.User;
 import ru.kata.spring.boot_security.model.Role;
 import ru.kata.spring.boot_security.util.UserMapper;
 
+import java.time.Instant;
 import java.util.*;
-import java.util.function.Function;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
 public class UserServiceImp implements UserService, UserDetailsService {
+
+    /**
+     * Максимальный размер страницы для getAllUsersWithRoles.
+     */
+    public static final int MAX_PAGE_SIZE = 500;
+
+    /**
+     * Имя метрики времени выполнения методов UserService (теги class и method добавляет TimedAspect).
+     */
+    public static final String USER_SERVICE_TIMER = "user.service";
+
     @Autowired
-    private PasswordEncoder passwordEncoder;
+    private PasswordHasher passwordHasher;
 
     private final UserRepository userRepository;
 
-    private final RoleRepository roleRepository;
+    private final RoleRegistry roleRegistry;
 
     private final UserMapper userMapper;
 
+    private final ApplicationEventPublisher eventPublisher;
+
+    private final TransactionTemplate transactionTemplate;
+
 
     public UserServiceImp(UserRepository userRepository,
-                          RoleRepository roleRepository,
-                          UserMapper userMapper) {
+                          RoleRegistry roleRegistry,
+                          UserMapper userMapper,
+                          ApplicationEventPublisher eventPublisher,
+                          TransactionTemplate transactionTemplate) {
         this.userRepository = userRepository;
-        this.roleRepository = roleRepository;
+        this.roleRegistry = roleRegistry;
         this.userMapper = userMapper;
+        this.eventPublisher = eventPublisher;
+        this.transactionTemplate = transactionTemplate;
     }
 
+    /**
+     * Удаляет пользователя (мягкое удаление, см. softDelete).
+     *
+     * @throws EmptyResultDataAccessException если пользователя нет или он уже удален.
+     */
+    @Timed(USER_SERVICE_TIMER)
     @Transactional
     @Override
     public void delete(Long id) {
-        userRepository.deleteById(id);
+        if (softDelete(List.of(id)) == 0) {
+            throw new EmptyResultDataAccessException(
+                    String.format("No user entity with id %s exists!", id), 1);
+        }
+    }
+
+    /**
+     * Удаляет пользователей с указанными id (мягкое удаление, см. softDelete), порциями по MAX_PAGE_SIZE.
+     * Несуществующие и уже удаленные id пропускаются.
+     *
+     * @return количество удаленных пользователей.
+     */
+    @Timed(USER_SERVICE_TIMER)
+    @Transactional
+    @Override
+    public int deleteAll(Collection<Long> ids) {
+        List<Long> distinctIds = ids.stream()
+                .filter(Objects::nonNull)
+                .distinct()
+                .toList();
+        int deleted = 0;
+        for (int from = 0; from < distinctIds.size(); from += MAX_PAGE_SIZE) {
+            deleted += softDelete(distinctIds.subList(from, Math.min(from + MAX_PAGE_SIZE, distinctIds.size())));
+        }
+        return deleted;
+    }
+
+    /**
+     * Помечает пользователей удаленными одним UPDATE: строки users и users_roles остаются
+     * до DeletedUserPurger, поэтому удаление не блокирует строки users_roles в запросе.
+     * Пользователи загружаются без ролей только для того, чтобы передать email в UserChangedEvent.
+     */
+    private int softDelete(List<Long> ids) {
+        List<User> users = userRepository.findAllById(ids);
+        if (users.isEmpty()) {
+            return 0;
+        }
+        int deleted = userRepository.markDeleted(users.stream().map(User::getId).toList(), Instant.now());
+        users.forEach(user -> eventPublisher.publishEvent(
+                new UserChangedEvent(UserChangedEvent.Type.DELETED, user.getId(), user.getEmail(), null)));
+        return deleted;
     }
 
+    @Timed(USER_SERVICE_TIMER)
     @Transactional(readOnly = true)
     @Override
     public User findByEmail(String email) {
@@ -55,37 +133,167 @@ public class UserServiceImp implements UserService, UserDetailsService {
     }
 
     /**
-     * Получить всех пользователей и их роли, отсортированные по идентификатору пользователя.
-     * Роли пользователя также сортируются и из них удаляется префикс "ROLE_".
+     * Получить пользователя по email для ответа REST API.
+     * Пользователь ищется по natural id, поэтому повторный запрос того же пользователя
+     * обслуживается из кэша второго уровня без обращения к базе данных.
+     *
+     * @return пользователь или null, если пользователь с таким email не найден.
+     */
+    @Timed(USER_SERVICE_TIMER)
+    @Transactional(readOnly = true)
+    @Override
+    public UserView findViewByEmail(String email) {
+        User user = userRepository.findByEmail(email);
+        if (user == null) {
+            return null;
+        }
+        List<String> roleNames = user.getRoles().stream()
+                .map(role -> role.getName().replace(UserMapper.ROLE_PREFIX, ""))
+                .sorted()
+                .collect(Collectors.toList());
+        return new UserView(user.getId(), user.getFirstname(), user.getLastname(),
+                user.getAge(), user.getEmail(), roleNames, user.getVersion());
+    }
+
+    /**
+     * Пользователи с указанными id, по возрастанию id, одним запросом.
+     * Отсутствующие (удаленные) пользователи пропускаются.
+     */
+    @Timed(USER_SERVICE_TIMER)
+    @Transactional(readOnly = true)
+    @Override
+    public List<UserView> findViewsByIds(Collection<Long> ids) {
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        List<UserView> users = new ArrayList<>(ids.size());
+        forEachUserView(userRepository.findRowsByIdIn(ids).iterator(), users::add);
+        return users;
+    }
+
+    /**
+     * Получить страницу пользователей, отсортированных по идентификатору.
+     * Используется keyset-пагинация: возвращаются пользователи с id больше afterId,
+     * поэтому стоимость запроса не зависит от номера страницы.
+     * Выполняется два запроса: id страницы и строки "пользователь - роль" этой страницы.
+     *
+     * @param afterId id последнего пользователя предыдущей страницы (null или 0 - с начала).
+     * @param limit размер страницы, ограничивается значением MAX_PAGE_SIZE.
+     * @return список пользователей страницы.
+     */
+    @Timed(USER_SERVICE_TIMER)
+    @Transactional(readOnly = true)
+    @Override
+    public List<UserView> getAllUsersWithRoles(Long afterId, int limit) {
+        int pageSize = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+        List<Long> ids = userRepository.findIdsAfter(
+                afterId == null ? 0L : afterId,
+                PageRequest.of(0, pageSize));
+        return findViewsByIds(ids);
+    }
+
+    /**
+     * Поиск пользователей по началу имени, фамилии или email, роли и возрасту,
+     * с keyset-пагинацией по id, как в getAllUsersWithRoles.
+     * Поиск по началу строки выполняется отдельным запросом по индексу каждой колонки
+     * (UserSearchRepository); регистр учитывается по правилам сравнения колонок
+     * в базе данных (в MySQL без учета регистра).
+     * Затем одним запросом читаются строки "пользователь - роль" найденной страницы.
      *
-     * @return Map, где ключ - пользователь, а значение - список его ролей.
+     * @param afterId id последнего пользователя предыдущей страницы (null или 0 - с начала).
+     * @param limit размер страницы, ограничивается значением MAX_PAGE_SIZE.
+     * @return найденные пользователи; пустой список, если роль не существует.
      */
+    @Timed(USER_SERVICE_TIMER)
     @Transactional(readOnly = true)
     @Override
-    public Map<User, List<String>> getAllUsersWithRoles() {
-        return userRepository
-                .findAll(Sort.by("id"))
-                .stream()
-                .sorted(Comparator.comparing(User::getId))
-                .collect(Collectors.toMap(
-                        Function.identity(),
-                        user -> user.getRoles().stream()
-                                .map(Role::getName)
-                                .map(roleName -> roleName.replace("ROLE_", ""))
-                                .sorted()
-                                .toList(),
-                        (oldValue, newValue) -> oldValue,
-                        LinkedHashMap::new
-                ));
-    }
-
-    /**
-     * Загружает детали пользователя по его email.
+    public List<UserView> searchUsers(UserSearchFilter filter, Long afterId, int limit) {
+        Long roleId = null;
+        if (StringUtils.hasText(filter.getRole())) {
+            Role role = roleRegistry.findByName(filter.getRole());
+            if (role == null) {
+                return List.of();
+            }
+            roleId = role.getId();
+        }
+        int pageSize = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+        List<Long> ids = userRepository.searchIds(
+                afterId == null ? 0L : afterId,
+                toPrefixPattern(filter.getQ()),
+                filter.getMinAge(),
+                filter.getMaxAge(),
+                roleId,
+                pageSize);
+        return findViewsByIds(ids);
+    }
+
+    /**
+     * Последовательно передает всех пользователей в consumer, читая их из базы потоком.
+     * Читаются проекции, а не сущности, поэтому контекст персистентности не растет
+     * и расход памяти не зависит от размера таблицы.
+     *
+     * @param consumer обработчик, вызываемый для каждого пользователя в порядке id.
+     */
+    @Timed(USER_SERVICE_TIMER)
+    @Transactional(readOnly = true)
+    @Override
+    public void streamAllUsersWithRoles(Consumer<UserView> consumer) {
+        try (Stream<UserRoleRow> rows = userRepository.streamAllRows()) {
+            forEachUserView(rows.iterator(), consumer);
+        }
+    }
+
+    /**
+     * Шаблон LIKE для поиска по началу строки; "!", "%" и "_" в запросе экранируются.
+     */
+    private static String toPrefixPattern(String query) {
+        if (!StringUtils.hasText(query)) {
+            return null;
+        }
+        return query.trim()
+                .replace("!", "!!")
+                .replace("%", "!%")
+                .replace("_", "!_") + "%";
+    }
+
+    /**
+     * Собирает UserView из строк "пользователь - роль".
+     * Строки одного пользователя должны идти подряд.
+     * Имена ролей сортируются и из них удаляется префикс "ROLE_".
+     */
+    private static void forEachUserView(Iterator<UserRoleRow> rows, Consumer<UserView> consumer) {
+        UserRoleRow current = null;
+        List<String> roleNames = new ArrayList<>();
+        while (rows.hasNext()) {
+            UserRoleRow row = rows.next();
+            if (current != null && !current.getId().equals(row.getId())) {
+                consumer.accept(toView(current, roleNames));
+                roleNames = new ArrayList<>();
+            }
+            current = row;
+            if (row.getRoleName() != null) {
+                roleNames.add(row.getRoleName().replace(UserMapper.ROLE_PREFIX, ""));
+            }
+        }
+        if (current != null) {
+            consumer.accept(toView(current, roleNames));
+        }
+    }
+
+    private static UserView toView(UserRoleRow row, List<String> roleNames) {
+        Collections.sort(roleNames);
+        return new UserView(row.getId(), row.getFirstname(), row.getLastname(),
+                row.getAge(), row.getEmail(), roleNames, row.getVersion());
+    }
+
+    /**
+     * Загружает детали пользователя по его email (по natural id, через кэш второго уровня).
      *
      * @param email Email пользователя.
      * @return Объект UserDetails с информацией о пользователе.
      * @throws UsernameNotFoundException если пользователь с указанным email не найден.
      */
+    @Timed(value = "auth.load.user", description = "loadUserByUsername latency, exception tag shows failures")
     @Transactional(readOnly = true)
     @Override
     public UserDetails loadUserByUsername(String email) throws UsernameNotFoundException {
@@ -105,59 +313,160 @@ public class UserServiceImp implements UserService, UserDetailsService {
      * Добавляет пользователя и его роли в базу данных.
      * Преобразует UserDto в модель User, использует метод setRolesToUser для установки ролей,
      * указанных в UserDto, и сохраняет пользователя в базе данных.
+     * Пароль хэшируется до начала транзакции, чтобы ожидание PasswordHasher и BCrypt
+     * не занимали соединение с базой данных.
      *
      * @param userDto DTO пользователя с информацией о пользователе и его ролях.
      */
-    @Transactional
+    @Timed(USER_SERVICE_TIMER)
     @Override
     public void addUserWithRoles(UserDto userDto) {
-        User user = userMapper.toModel(userDto);
-        user.setPassword(passwordEncoder.encode(userDto.getPassword()));
-        setRolesToUser(user, userDto.getRoles());
-        userRepository.save(user);
+        String encodedPassword = passwordHasher.encode(userDto.getPassword());
+        transactionTemplate.executeWithoutResult(status -> {
+            User user = userMapper.toModel(userDto);
+            user.setPassword(encodedPassword);
+            setRolesToUser(user, userDto.getRoles());
+            userRepository.save(user);
+            eventPublisher.publishEvent(
+                    new UserChangedEvent(UserChangedEvent.Type.CREATED, user.getId(), user.getEmail(), null));
+        });
     }
 
     /**
      * Обновляет пользователя и его роли в базе данных.
      * Находит существующего пользователя по id из UserDto, обновляет его поля,
+     * пароль хэшируется заново (до начала транзакции), только если он задан и изменился,
      * использует метод setRolesToUser для установки ролей, указанных в UserDto,
      * и сохраняет обновленного пользователя в базе данных.
      *
      * @param userDto DTO пользователя с информацией о пользователе и его ролях.
      */
-    @Transactional
+    @Timed(USER_SERVICE_TIMER)
     @Override
     public void updateUserWithRoles(UserDto userDto) {
+        String encodedPassword = encodeNewPassword(userDto.getId(), userDto.getPassword());
+        transactionTemplate.executeWithoutResult(status -> updateUserWithRoles(userDto, encodedPassword));
+    }
+
+    private void updateUserWithRoles(UserDto userDto, String encodedPassword) {
         User existingUser = userRepository.findById(userDto.getId()).orElse(null);
 
         if (existingUser != null) {
+            String previousEmail = existingUser.getEmail();
             existingUser.setFirstname(userDto.getFirstname());
             existingUser.setLastname(userDto.getLastname());
             existingUser.setAge(userDto.getAge());
             existingUser.setEmail(userDto.getEmail());
-            existingUser.setPassword(passwordEncoder.encode(userDto.getPassword()));
+            if (encodedPassword != null) {
+                existingUser.setPassword(encodedPassword);
+            }
             setRolesToUser(existingUser, userDto.getRoles());
 
             userRepository.save(existingUser);
+            eventPublisher.publishEvent(new UserChangedEvent(
+                    UserChangedEvent.Type.UPDATED,
+                    existingUser.getId(),
+                    existingUser.getEmail(),
+                    previousEmail.equals(existingUser.getEmail()) ? null : previousEmail));
         } else {
             throw new IllegalArgumentException("userRepository or userDto cannot be null");
         }
     }
 
+    /**
+     * Частично изменяет пользователя: изменяются только поля UserPatchDto, отличные от null.
+     * Если версия пользователя не совпадает с переданной (пользователя уже изменили),
+     * изменения не применяются. UPDATE содержит только измененные столбцы,
+     * а в users_roles добавляются и удаляются только изменившиеся роли.
+     * Новый пароль хэшируется до начала транзакции.
+     *
+     * @param id    id пользователя.
+     * @param patch изменяемые поля и версия, которую видел клиент.
+     * @return пользователь после изменения, с новой версией.
+     * @throws EmptyResultDataAccessException          если пользователя нет.
+     * @throws ObjectOptimisticLockingFailureException если версия не совпадает.
+     * @throws DataIntegrityViolationException         если новый email занят другим пользователем.
+     */
+    @Timed(USER_SERVICE_TIMER)
+    @Override
+    public UserView patchUser(Long id, UserPatchDto patch) {
+        String encodedPassword = encodeNewPassword(id, patch.getPassword());
+        return transactionTemplate.execute(status -> patchUser(id, patch, encodedPassword));
+    }
+
+    private UserView patchUser(Long id, UserPatchDto patch, String encodedPassword) {
+        User user = userRepository.findById(id)
+                .orElseThrow(() -> new EmptyResultDataAccessException(
+                        String.format("No user entity with id %s exists!", id), 1));
+        if (!user.getVersion().equals(patch.getVersion())) {
+            throw new ObjectOptimisticLockingFailureException(User.class, id);
+        }
+
+        String previousEmail = user.getEmail();
+        if (patch.getFirstname() != null) {
+            user.setFirstname(patch.getFirstname());
+        }
+        if (patch.getLastname() != null) {
+            user.setLastname(patch.getLastname());
+        }
+        if (patch.getAge() != null) {
+            user.setAge(patch.getAge());
+        }
+        if (patch.getEmail() != null && !patch.getEmail().equals(previousEmail)) {
+            if (userRepository.findByEmail(patch.getEmail()) != null) {
+                throw new DataIntegrityViolationException(
+                        String.format("Email %s is already taken", patch.getEmail()));
+            }
+            user.setEmail(patch.getEmail());
+        }
+        if (encodedPassword != null) {
+            user.setPassword(encodedPassword);
+        }
+        if (patch.getRoles() != null) {
+            setRolesToUser(user, patch.getRoles());
+        }
+
+        userRepository.flush();
+        eventPublisher.publishEvent(new UserChangedEvent(
+                UserChangedEvent.Type.UPDATED,
+                user.getId(),
+                user.getEmail(),
+                previousEmail.equals(user.getEmail()) ? null : previousEmail));
+        return findViewsByIds(List.of(id)).get(0);
+    }
+
+    /**
+     * Хэширует новый пароль пользователя вне транзакции: соединение с базой данных
+     * не занято, пока запрос ждет очереди PasswordHasher и BCrypt.
+     * Сохраненный хэш читается отдельным коротким запросом (обычно из кэша второго уровня).
+     *
+     * @return хэш или null, если пароль не задан или совпадает с сохраненным хэшем.
+     */
+    private String encodeNewPassword(Long id, String rawPassword) {
+        if (rawPassword == null || rawPassword.isBlank()) {
+            return null;
+        }
+        String storedPassword = userRepository.findById(id).map(User::getPassword).orElse(null);
+        return passwordHasher.isNewPassword(rawPassword, storedPassword) ? passwordHasher.encode(rawPassword) : null;
+    }
+
     /**
      * Устанавливает роли для пользователя.
-     * Метод преобразует набор RoleDto в набор Role, находя каждую роль в базе данных по ее имени,
-     * затем устанавливает этот набор ролей для указанного пользователя.
+     * Метод преобразует набор RoleDto в набор Role, находя каждую роль по ее имени в RoleRegistry
+     * (без запросов к базе данных), затем приводит к нему текущий набор ролей пользователя.
+     * Коллекция не заменяется, а изменяется на месте, поэтому Hibernate удаляет и добавляет
+     * в users_roles только изменившиеся роли, а не пересоздает все строки пользователя.
      *
      * @param user пользователь, которому нужно установить роли.
      * @param roleDtoSet набор DTO ролей, которые нужно установить пользователю.
      */
     private void setRolesToUser(User user, Set<RoleDto> roleDtoSet) {
         Set<Role> roles = roleDtoSet.stream()
-                .map(roleDto -> roleRepository.findByName("ROLE_" + roleDto.getName()))
+                .map(roleDto -> roleRegistry.findByName(roleDto.getName()))
                 .filter(Objects::nonNull)
                 .collect(Collectors.toSet());
 
-        user.setRoles(roles);
+        user.getRoles().retainAll(roles);
+        user.getRoles().addAll(roles);
     }
 }
@@ -0,0 +1,45 @@
+package ru.kata.spring.boot_security.util;
+
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.dataformat.csv.CsvMapper;
+import com.fasterxml.jackson.dataformat.csv.CsvSchema;
+import org.springframework.stereotype.Component;
+import ru.kata.spring.boot_security.dto.UserDto;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Класс UserDtoReader используется для потокового чтения UserDto
+ * из JSON-массива или CSV при массовом импорте.
+ * Записи читаются по одной, весь входной поток в память не загружается.
+ * В CSV первая строка - заголовок с именами полей UserDto,
+ * роли перечисляются через ";" (например "ADMIN;USER").
+ */
+@Component
+public class UserDtoReader {
+
+    private final ObjectReader jsonReader;
+
+    private final ObjectReader csvReader;
+
+    public UserDtoReader(ObjectMapper objectMapper) {
+        this.jsonReader = objectMapper.readerFor(UserDto.class);
+        this.csvReader = new CsvMapper()
+                .readerFor(UserDto.class)
+                .with(CsvSchema.emptySchema()
+                        .withHeader()
+                        .withArrayElementSeparator(";"));
+    }
+
+    public MappingIterator<UserDto> readJson(InputStream inputStream) throws IOException {
+        return jsonReader.readValues(inputStream);
+    }
+
+    public MappingIterator<UserDto> readCsv(InputStream inputStream) throws IOException {
+        return csvReader.readValues(inputStream);
+    }
+
+}
@@ -1,27 +1,43 @@
 package ru.kata.spring.boot_security.util;
 
-import org.modelmapper.ModelMapper;
-import org.springframework.stereotype.Component;
+import org.mapstruct.Mapper;
+import org.mapstruct.Mapping;
+import ru.kata.spring.boot_security.dto.RoleDto;
 import ru.kata.spring.boot_security.dto.UserDto;
+import ru.kata.spring.boot_security.model.Role;
 import ru.kata.spring.boot_security.model.User;
 
+import java.util.Set;
+
 /**
- * Класс UserMapper используется для преобразования объектов
- * типа UserDto в объекты типа User.
- * Для преобразования используется библиотека ModelMapper,
- * которая автоматически сопоставляет поля с одинаковыми именами.
+ * Интерфейс UserMapper используется для преобразования объектов
+ * типа UserDto в объекты типа User и обратно, а также Role в RoleDto.
+ * Реализация (UserMapperImpl) генерируется MapStruct при компиляции
+ * и копирует поля прямыми вызовами getter/setter, без рефлексии.
+ * Роли и пароль при преобразовании UserDto в User не копируются:
+ * их устанавливает сервис (через RoleRegistry и PasswordHasher).
  */
-@Component
-public class UserMapper {
+@Mapper(componentModel = "spring")
+public interface UserMapper {
 
-    private final ModelMapper modelMapper;
+    String ROLE_PREFIX = "ROLE_";
 
-    public UserMapper(ModelMapper modelMapper) {
-        this.modelMapper = modelMapper;
-    }
+    @Mapping(target = "roles", ignore = true)
+    @Mapping(target = "password", ignore = true)
+    @Mapping(target = "enabled", constant = "true")
+    User toModel(UserDto dto);
+
+    @Mapping(target = "password", ignore = true)
+    UserDto toDto(User user);
+
+    Set<RoleDto> toDto(Set<Role> roles);
 
-    public User toModel(UserDto dto) {
-        return modelMapper.map(dto, User.class);
+    /**
+     * Имя роли в RoleDto хранится без префикса "ROLE_" (например "ADMIN").
+     */
+    default RoleDto toDto(Role role) {
+        String name = role.getName();
+        return new RoleDto(name.startsWith(ROLE_PREFIX) ? name.substring(ROLE_PREFIX.length()) : name);
     }
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,9 @@
+-- Search indexes start with deleted_at (see User), same as mysql/V2__search_indexes.sql.
+
+drop index idx_users_firstname;
+drop index idx_users_lastname_firstname;
+drop index idx_users_deleted_at;
+
+create index idx_users_deleted_at_firstname on users (deleted_at, firstname);
+create index idx_users_deleted_at_lastname_firstname on users (deleted_at, lastname, firstname);
+create index idx_users_deleted_at_email on users (deleted_at, email);
@@ -0,0 +1,63 @@
+-- Schema of the User, Role and AuditRecord entities (MySQL 8).
+-- Sequences are emulated with tables, as Hibernate does for MySQL.
+
+create table role_seq (
+    next_val bigint
+) engine = InnoDB;
+
+insert into role_seq values (1);
+
+create table users_seq (
+    next_val bigint
+) engine = InnoDB;
+
+insert into users_seq values (1);
+
+create table role (
+    id        bigint not null,
+    role_name varchar(255),
+    primary key (id),
+    constraint uk_role_name unique (role_name)
+) engine = InnoDB;
+
+create table users (
+    id         bigint not null,
+    version    bigint,
+    firstname  varchar(255),
+    lastname   varchar(255),
+    age        integer,
+    email      varchar(255),
+    password   varchar(255),
+    enabled    bit    not null,
+    deleted_at datetime(6),
+    primary key (id),
+    constraint uk_users_email unique (email)
+) engine = InnoDB;
+
+create index idx_users_firstname on users (firstname);
+create index idx_users_lastname_firstname on users (lastname, firstname);
+create index idx_users_age on users (age);
+create index idx_users_deleted_at on users (deleted_at);
+
+create table users_roles (
+    users_id bigint not null,
+    roles_id bigint not null,
+    primary key (users_id, roles_id),
+    constraint fk_users_roles_user foreign key (users_id) references users (id),
+    constraint fk_users_roles_role foreign key (roles_id) references role (id)
+) engine = InnoDB;
+
+create index idx_users_roles_role_user on users_roles (roles_id, users_id);
+
+create table audit_log (
+    id             bigint       not null auto_increment,
+    occurred_at    datetime(6)  not null,
+    actor          varchar(255) not null,
+    action         varchar(16)  not null,
+    user_id        bigint,
+    email          varchar(255),
+    previous_email varchar(255),
+    primary key (id)
+) engine = InnoDB;
+
+create index idx_audit_log_user_id on audit_log (user_id, id);
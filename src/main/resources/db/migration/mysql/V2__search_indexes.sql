@@ -0,0 +1,9 @@
+-- Search indexes start with deleted_at (see User), same as h2/V2__search_indexes.sql.
+
+alter table users
+    drop index idx_users_firstname,
+    drop index idx_users_lastname_firstname,
+    drop index idx_users_deleted_at,
+    add index idx_users_deleted_at_firstname (deleted_at, firstname),
+    add index idx_users_deleted_at_lastname_firstname (deleted_at, lastname, firstname),
+    add index idx_users_deleted_at_email (deleted_at, email);
@@ -43,11 +43,21 @@ document.addEventListener('DOMContentLoaded', function () {
     const LOGOUT_URL = "/logout";
     const SUCCESS_LOGOUT_URL = "/login?logout";
     const LOGOUT_BUTTON_CLASS = ".logout-button";
+    const USERS_PAGE_SIZE = 100;
+
+    // данные, встроенные сервером в страницу: текущий пользователь и первая страница
+    // пользователей; если их нет, данные загружаются через API
+    const usersIsland = document.getElementById('users-data');
+    const initialUsers = readJsonIsland('users-data');
+    const initialCurrentUser = readJsonIsland('current-user-data');
 
     // получаем данные для передачи в модальное окно edit
-    function handleEditButtonClick(userId, firstname, lastname, age, email, role) {
+    function handleEditButtonClick(userId, firstname, lastname, age, email, role, version) {
 
         const editUserModal = document.querySelector('#editUserModal');
+        // версия пользователя передается в PATCH: если пользователя
+        // уже изменили, сервер ответит 409 и изменения не будут потеряны молча
+        editUserModal.dataset.version = version;
 
         const userIdInput = editUserModal.querySelector('#editUserId');
         const firstnameInput = editUserModal.querySelector('#editFirstName');
@@ -86,67 +96,143 @@ document.addEventListener('DOMContentLoaded', function () {
     }
 
     // функция для получения всех пользователей
-    // и добавление данных в модальные окна
-    function getUsersAndDisplayInTable() {
-        fetch(CURRENT_ADMIN_URL + "/all-users")
-            .then(response => {
-                if (!response.ok) {
-                    console.error('Ошибка при получении данных');
-                }
-                return response.json();
-            })
-            .then(data => {
-                const usersWithRoles = data;
-                const tableBody = document.querySelector('#usersTable');
-                if (!tableBody) {
-                    console.error('Элемент таблицы не найден');
-                }
-                tableBody.innerHTML = '';
-                Object.values(usersWithRoles).forEach(user => {
-                    const row = createTableRow(user);
-                    tableBody.appendChild(row);
-
-                    const editButton = row.querySelector('.edit-user-button');
-                    const deleteButton = row.querySelector('.delete-user-button');
-
-                    editButton.addEventListener('click', () => {
-                        handleEditButtonClick(
-                            user.id,
-                            user.firstname,
-                            user.lastname,
-                            user.age,
-                            user.email,
-                            user.roles.map(role => role.name.replace('ROLE_', '')).sort().join(' ')
-                        );
-                    });
-
-                    deleteButton.addEventListener('click', () => {
-                        handleDeleteButtonClick(
-                            user.id,
-                            user.firstname,
-                            user.lastname,
-                            user.age,
-                            user.email,
-                            user.roles.map(role => role.name.replace('ROLE_', '')).sort().join(' ')
-                        );
-                    });
-                });
-            })
+    // и добавление данных в модальные окна.
+    // Пользователи загружаются постранично (keyset-пагинация по id),
+    // каждая следующая страница запрашивается после отрисовки предыдущей.
+    // initialUsers - первая страница, уже встроенная в страницу (необязательно)
+    function getUsersAndDisplayInTable(initialUsers) {
+        const tableBody = document.querySelector('#usersTable');
+        if (!tableBody) {
+            console.error('Элемент таблицы не найден');
+            return;
+        }
+        tableBody.innerHTML = '';
+        userRowsById.clear();
+        const generation = ++usersTableGeneration;
+        if (initialUsers) {
+            showUsersPage(tableBody, initialUsers, generation);
+        } else {
+            loadUsersPage(tableBody, 0, generation);
+        }
+    }
+
+    // номер текущей загрузки таблицы, чтобы страницы
+    // устаревшей загрузки не добавлялись в таблицу
+    let usersTableGeneration = 0;
+
+    function loadUsersPage(tableBody, afterId, generation) {
+        fetchJsonWithETag(`${CURRENT_ADMIN_URL}/all-users?afterId=${afterId}&limit=${USERS_PAGE_SIZE}`)
+            .then(users => showUsersPage(tableBody, users, generation))
             .catch(error => {
                 console.error('Ошибка при получении данных:', error);
             });
     }
 
+    function showUsersPage(tableBody, users, generation) {
+        if (generation !== usersTableGeneration) {
+            return;
+        }
+        users.forEach(user => appendUserRow(tableBody, user));
+        if (users.length === USERS_PAGE_SIZE) {
+            loadUsersPage(tableBody, users[users.length - 1].id, generation);
+        }
+    }
+
+    // строки таблицы по id пользователя, для обновления строк на месте
+    const userRowsById = new Map();
+
+    function appendUserRow(tableBody, user) {
+        const existingRow = userRowsById.get(user.id);
+        if (existingRow) {
+            existingRow.replaceWith(createUserRow(user));
+            return;
+        }
+        tableBody.appendChild(createUserRow(user));
+    }
+
+    // добавляет или заменяет строку пользователя, сохраняя порядок по id
+    function upsertUserRow(user) {
+        const tableBody = document.querySelector('#usersTable');
+        const existingRow = userRowsById.get(user.id);
+        if (existingRow) {
+            existingRow.replaceWith(createUserRow(user));
+            return;
+        }
+        const nextRow = Array.from(tableBody.rows).find(row => Number(row.dataset.userId) > user.id);
+        tableBody.insertBefore(createUserRow(user), nextRow || null);
+    }
+
+    function removeUserRow(userId) {
+        const row = userRowsById.get(userId);
+        if (row) {
+            row.remove();
+            userRowsById.delete(userId);
+        }
+    }
+
+    function createUserRow(user) {
+        const row = createTableRow(user);
+        row.dataset.userId = user.id;
+        userRowsById.set(user.id, row);
+
+        const editButton = row.querySelector('.edit-user-button');
+        const deleteButton = row.querySelector('.delete-user-button');
+
+        editButton.addEventListener('click', () => {
+            handleEditButtonClick(
+                user.id,
+                user.firstname,
+                user.lastname,
+                user.age,
+                user.email,
+                user.roles.join(' '),
+                user.version
+            );
+        });
+
+        deleteButton.addEventListener('click', () => {
+            handleDeleteButtonClick(
+                user.id,
+                user.firstname,
+                user.lastname,
+                user.age,
+                user.email,
+                user.roles.join(' ')
+            );
+        });
+        return row;
+    }
+
+    // изменения пользователей приходят с сервера (Server-Sent Events),
+    // и строки таблицы обновляются на месте, без повторной загрузки всей таблицы.
+    // reset приходит, если при переподключении часть изменений была пропущена
+    let userEvents = null;
+
+    function subscribeToUserEvents() {
+        if (!window.EventSource) {
+            return;
+        }
+        // id событий, с которым сервер встроил данные: если после этого были изменения,
+        // первым событием придет reset
+        const eventId = initialUsers && usersIsland.dataset.eventId;
+        userEvents = new EventSource(`${CURRENT_ADMIN_URL}/users/events`
+            + (eventId ? `?lastEventId=${encodeURIComponent(eventId)}` : ''));
+        userEvents.addEventListener('upsert', event => upsertUserRow(JSON.parse(event.data)));
+        userEvents.addEventListener('delete', event => removeUserRow(JSON.parse(event.data).id));
+        userEvents.addEventListener('reset', () => getUsersAndDisplayInTable());
+    }
+
+    // без подписки на изменения таблица после изменения загружается заново
+    function refreshUsersTableIfNotSubscribed() {
+        if (!userEvents || userEvents.readyState !== EventSource.OPEN) {
+            getUsersAndDisplayInTable();
+        }
+    }
+
     // получение информации о текущем пользователе
     // используются в шапке админ панели
     // и в окне роли User в навигационной панели
-    fetch(CURRENT_ADMIN_URL + "/current-user")
-        .then(response => {
-            if (!response.ok) {
-                console.error('Ошибка при получении данных');
-            }
-            return response.json();
-        })
+    (initialCurrentUser ? Promise.resolve(initialCurrentUser) : fetchJsonWithETag(CURRENT_ADMIN_URL + "/current-user"))
         .then(data => {
             const currentUser = data;
             const userId = currentUser.id;
@@ -154,7 +240,7 @@ document.addEventListener('DOMContentLoaded', function () {
             const lastname = currentUser.lastname;
             const age = currentUser.age;
             const email = currentUser.email;
-            const roles = currentUser.roles.map(role => role.name.replace('ROLE_', '')).sort();
+            const roles = currentUser.roles;
 
             document.getElementById('user-email').textContent = email;
             document.getElementById('user-roles').textContent = roles.join(' ');
@@ -178,7 +264,7 @@ document.addEventListener('DOMContentLoaded', function () {
         const lastname = user.lastname;
         const age = user.age;
         const email = user.email;
-        const roles = user.roles.map(role => role.name.replace('ROLE_', '')).sort();
+        const roles = user.roles;
 
         const row = document.createElement('tr');
         row.innerHTML = `
@@ -205,7 +291,8 @@ document.addEventListener('DOMContentLoaded', function () {
         return row;
     }
 
-    getUsersAndDisplayInTable();
+    subscribeToUserEvents();
+    getUsersAndDisplayInTable(initialUsers);
 
     // реализация кнопки add new user в вкладке New user
     document.querySelector('.add-user-form').addEventListener('submit', function(event) {
@@ -246,7 +333,7 @@ document.addEventListener('DOMContentLoaded', function () {
             })
             .then(data => {
                 // Обновляем таблицу
-                getUsersAndDisplayInTable();
+                refreshUsersTableIfNotSubscribed();
                 // Переключаемся на вкладку User table
                 $('a[href="#userTable"]').tab('show');
             })
@@ -276,7 +363,7 @@ document.addEventListener('DOMContentLoaded', function () {
                     console.error('Ошибка при удалении пользователя');
                 }
                 // Обновляем таблицу
-                getUsersAndDisplayInTable();
+                refreshUsersTableIfNotSubscribed();
                 // Закрываем модальное окно
                 $('#deleteUserModal').modal('hide');
             })
@@ -288,14 +375,17 @@ document.addEventListener('DOMContentLoaded', function () {
     // реализация кнопки save changes в модальном окне для редактирования пользователя
     document.querySelector('.save-changes').addEventListener('click', function () {
 
-        let userDto = {
-            id: document.querySelector('#editUserId').value, // Добавьте это поле
+        const userId = document.querySelector('#editUserId').value;
+        const roles = Array.from(document.getElementById('editRole').selectedOptions).map(option => option.value.toUpperCase());
+        // пустой пароль и пустой выбор ролей не изменяют пользователя
+        let userPatch = {
             firstname: document.querySelector('#editFirstName').value,
             lastname: document.querySelector('#editLastName').value,
             age: document.querySelector('#editAge').value,
             email: document.querySelector('#editEmail').value,
             password: document.querySelector('#editPassword').value,
-            roles: Array.from(document.getElementById('editRole').selectedOptions).map(option => option.value.toUpperCase())
+            roles: roles.length > 0 ? roles : null,
+            version: document.querySelector('#editUserModal').dataset.version
         };
 
         const token = document.querySelector(`meta[name="${CSRF_TOKEN_NAME}"]`).getAttribute("content");
@@ -304,20 +394,23 @@ document.addEventListener('DOMContentLoaded', function () {
             [CSRF_HEADER_NAME]: token
         });
 
-        fetch(CURRENT_ADMIN_URL + "/update", {
-            method: 'PUT',
+        fetch(`${CURRENT_ADMIN_URL}/users/${userId}`, {
+            method: 'PATCH',
             headers: headers,
-            body: JSON.stringify(userDto)
+            body: JSON.stringify(userPatch)
         })
             .then(response => {
-                if (!response.ok) {
+                if (response.status === 409) {
+                    alert('Пользователя уже изменили, данные в таблице обновлены. Повторите изменение.');
+                    getUsersAndDisplayInTable();
+                } else if (!response.ok) {
                     console.error('Ошибка при обновлении пользователя');
                 }
                 return response.text();
             })
             .then(data => {
                 // Обновляем таблицу
-                getUsersAndDisplayInTable();
+                refreshUsersTableIfNotSubscribed();
                 // Закрываем модальное окно
                 $('#editUserModal').modal('hide');
             })
@@ -0,0 +1,51 @@
+// Загрузка JSON с условными запросами.
+// Ответ сервера и его ETag сохраняются в sessionStorage, при следующем запросе
+// ETag отправляется в If-None-Match; если данные не изменились, сервер отвечает 304
+// без тела и используются сохраненные данные.
+async function fetchJsonWithETag(url) {
+    const storageKey = 'etag-cache:' + url;
+    const cached = JSON.parse(sessionStorage.getItem(storageKey) || 'null');
+
+    const response = await fetch(url, {
+        headers: cached ? {'If-None-Match': cached.etag} : {},
+        cache: 'no-store'
+    });
+    if (response.status === 304 && cached) {
+        return cached.data;
+    }
+    if (response.status === 401) {
+        // токен истек или отозван - нужно войти заново
+        window.location.href = '/login';
+        throw new Error('Требуется вход');
+    }
+    if (!response.ok) {
+        throw new Error(`Ошибка при получении данных: ${response.status}`);
+    }
+
+    const data = await response.json();
+    const etag = response.headers.get('ETag');
+    if (etag) {
+        try {
+            sessionStorage.setItem(storageKey, JSON.stringify({etag: etag, data: data}));
+        } catch (error) {
+            // sessionStorage переполнен - работаем без сохранения
+            sessionStorage.removeItem(storageKey);
+        }
+    }
+    return data;
+}
+
+// Данные, встроенные сервером в страницу (<script type="application/json" id="...">).
+// Возвращает null, если данных нет, - тогда их нужно загрузить через API.
+function readJsonIsland(id) {
+    const element = document.getElementById(id);
+    if (!element || !element.textContent.trim()) {
+        return null;
+    }
+    try {
+        return JSON.parse(element.textContent);
+    } catch (error) {
+        console.error('Некорректные встроенные данные:', id, error);
+        return null;
+    }
+}
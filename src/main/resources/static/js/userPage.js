@@ -16,12 +16,12 @@ const headerUserEmailElement = document.getElementById('user-email');
 const headerUserRolesElement = document.getElementById('user-roles');
 
 const formatRoles = roles =>
-    roles.map(role => `<span>${role.name.replace('ROLE_', '')}</span>`).join(', ');
+    roles.map(role => `<span>${role}</span>`).join(', ');
 
 window.onload = async function () {
     try {
-        const response = await fetch(CURRENT_USER_URL);
-        const data = await response.json();
+        // данные встроены сервером в страницу, без них загружаются через API
+        const data = readJsonIsland('current-user-data') || await fetchJsonWithETag(CURRENT_USER_URL);
 
         userIdElement.textContent = data.id;
         userFirstNameElement.textContent = data.firstname;
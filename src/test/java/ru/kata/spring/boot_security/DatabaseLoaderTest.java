@@ -0,0 +1,46 @@
+package ru.kata.spring.boot_security;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.context.ActiveProfiles;
+import ru.kata.spring.boot_security.service.UserService;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Проверяет профиль fast: схема создается миграциями Flyway и совпадает с сущностями (ddl-auto=validate),
+ * а повторное начальное заполнение ничего не дублирует.
+ */
+@SpringBootTest
+@ActiveProfiles({"test", "fast"})
+class DatabaseLoaderTest {
+
+    @Autowired
+    private DatabaseLoader databaseLoader;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private PasswordEncoder passwordEncoder;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void seedingIsIdempotentOnMigratedSchema() {
+        databaseLoader.seed();
+        databaseLoader.seed();
+
+        assertThat(jdbcTemplate.queryForObject("select count(*) from role", Integer.class)).isEqualTo(2);
+        assertThat(jdbcTemplate.queryForObject("select count(*) from users", Integer.class)).isEqualTo(2);
+        assertThat(jdbcTemplate.queryForObject("select count(*) from users_roles", Integer.class)).isEqualTo(3);
+        assertThat(passwordEncoder.matches("admin", userService.findByEmail("admin@mail.ru").getPassword())).isTrue();
+        assertThat(passwordEncoder.matches("user", userService.findByEmail("user@mail.ru").getPassword())).isTrue();
+        assertThat(userService.findViewByEmail("admin@mail.ru").roles()).containsExactly("ADMIN", "USER");
+    }
+
+}
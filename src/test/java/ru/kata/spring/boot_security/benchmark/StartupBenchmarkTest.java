@@ -0,0 +1,157 @@
+package ru.kata.spring.boot_security.benchmark;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ru.kata.spring.boot_security.SpringBootSecurity;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.ConnectException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Сравнивает время от запуска JVM до первого успешного ответа GET /login:
+ * обычный запуск (создание всех бинов, схема через create-drop), профиль fast
+ * (ленивое создание бинов, миграции Flyway) и профиль fast с архивом CDS.
+ * Каждый режим запускается RUNS раз в отдельной JVM, печатается медиана.
+ * Приложение запускается на classpath тестов с базой данных H2 (профиль test);
+ * каталоги классов упаковываются в jar, так как CDS не архивирует классы из каталогов.
+ * Запуск: mvn test -P benchmark -Dtest=StartupBenchmarkTest (нужен JDK 21)
+ */
+@Tag("benchmark")
+class StartupBenchmarkTest {
+
+    private static final int RUNS = 3;
+
+    private static final long TIMEOUT_SECONDS = 120;
+
+    private final HttpClient httpClient = HttpClient.newBuilder()
+            .followRedirects(HttpClient.Redirect.NEVER)
+            .build();
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void compareStartupModes() throws Exception {
+        String classpath = jarClasspath();
+        Path archive = tempDir.resolve("app.jsa");
+
+        Process training = start(classpath, List.of("-XX:ArchiveClassesAtExit=" + archive),
+                "test,fast", "--app.startup.exit-on-ready=true");
+        assertThat(training.waitFor(TIMEOUT_SECONDS, TimeUnit.SECONDS)).isTrue();
+        assertThat(archive).exists();
+
+        report("default (eager, create-drop)", classpath, List.of(), "test");
+        report("fast (lazy, Flyway)", classpath, List.of(), "test,fast");
+        report("fast + CDS", classpath, List.of("-XX:SharedArchiveFile=" + archive), "test,fast");
+    }
+
+    private void report(String name, String classpath, List<String> jvmOptions, String profiles) throws Exception {
+        long[] millis = new long[RUNS];
+        for (int i = 0; i < RUNS; i++) {
+            millis[i] = timeToFirstRequest(classpath, jvmOptions, profiles);
+        }
+        Arrays.sort(millis);
+        System.out.printf("%-30s first request after %5d ms (runs: %s)%n", name, millis[RUNS / 2],
+                Arrays.toString(millis));
+    }
+
+    private long timeToFirstRequest(String classpath, List<String> jvmOptions, String profiles) throws Exception {
+        int port = freePort();
+        long start = System.nanoTime();
+        Process process = start(classpath, jvmOptions, profiles, "--server.port=" + port);
+        try {
+            HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/login")).build();
+            long deadline = start + TimeUnit.SECONDS.toNanos(TIMEOUT_SECONDS);
+            while (System.nanoTime() < deadline) {
+                assertThat(process.isAlive()).isTrue();
+                try {
+                    if (httpClient.send(request, HttpResponse.BodyHandlers.discarding()).statusCode() == 200) {
+                        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+                    }
+                } catch (ConnectException e) {
+                    // сервер еще не слушает порт
+                }
+                Thread.sleep(10);
+            }
+            throw new AssertionError("Application did not answer within " + TIMEOUT_SECONDS + " s");
+        } finally {
+            process.destroy();
+            process.waitFor(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        }
+    }
+
+    private Process start(String classpath, List<String> jvmOptions, String profiles, String... args)
+            throws IOException {
+        List<String> command = new ArrayList<>();
+        command.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+        command.addAll(jvmOptions);
+        command.add("-Dspring.devtools.restart.enabled=false");
+        command.add("-cp");
+        command.add(classpath);
+        command.add(SpringBootSecurity.class.getName());
+        command.add("--spring.profiles.active=" + profiles);
+        command.add("--logging.level.root=WARN");
+        command.addAll(List.of(args));
+        return new ProcessBuilder(command)
+                .redirectErrorStream(true)
+                .redirectOutput(tempDir.resolve("app-" + System.nanoTime() + ".log").toFile())
+                .start();
+    }
+
+    /**
+     * Classpath тестов, в котором каталоги классов заменены jar-файлами.
+     */
+    private String jarClasspath() throws IOException {
+        String classpath = System.getProperty("surefire.test.class.path", System.getProperty("java.class.path"));
+        List<String> entries = new ArrayList<>();
+        for (String entry : classpath.split(File.pathSeparator)) {
+            Path path = Path.of(entry);
+            if (Files.isDirectory(path)) {
+                Path jar = tempDir.resolve(entries.size() + "-" + path.getFileName() + ".jar");
+                writeJar(path, jar);
+                entries.add(jar.toString());
+            } else if (Files.exists(path)) {
+                entries.add(entry);
+            }
+        }
+        return String.join(File.pathSeparator, entries);
+    }
+
+    private static void writeJar(Path directory, Path jar) throws IOException {
+        try (OutputStream out = Files.newOutputStream(jar);
+             JarOutputStream jarOut = new JarOutputStream(out);
+             Stream<Path> files = Files.walk(directory)) {
+            for (Path file : (Iterable<Path>) files.filter(Files::isRegularFile)::iterator) {
+                jarOut.putNextEntry(new JarEntry(directory.relativize(file).toString().replace(File.separatorChar, '/')));
+                Files.copy(file, jarOut);
+                jarOut.closeEntry();
+            }
+        }
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+}
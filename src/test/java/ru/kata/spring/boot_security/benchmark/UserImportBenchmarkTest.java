@@ -0,0 +1,78 @@
+package ru.kata.spring.boot_security.benchmark;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import ru.kata.spring.boot_security.dto.BulkImportResult;
+import ru.kata.spring.boot_security.dto.RoleDto;
+import ru.kata.spring.boot_security.dto.UserDto;
+import ru.kata.spring.boot_security.service.UserImportService;
+import ru.kata.spring.boot_security.service.UserService;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Сравнивает массовый импорт (UserImportService) с добавлением пользователей по одному
+ * (UserService.addUserWithRoles) на встроенной базе данных.
+ * Сложность BCrypt снижена до минимальной, чтобы измерялась запись в базу данных, а не хэширование.
+ * Запуск: mvn test -P benchmark
+ */
+@Tag("benchmark")
+@SpringBootTest(properties = "app.security.bcrypt-strength=4")
+@ActiveProfiles("test")
+class UserImportBenchmarkTest {
+
+    private static final int WARMUP_USERS_COUNT = 500;
+
+    private static final int USERS_COUNT = 5000;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private UserImportService userImportService;
+
+    @Test
+    void compareBulkImportWithOneAtATime() {
+        addOneAtATime(users("warmup-single", WARMUP_USERS_COUNT));
+        userImportService.importUsers(users("warmup-bulk", WARMUP_USERS_COUNT).iterator());
+
+        List<UserDto> singleUsers = users("single", USERS_COUNT);
+        long singleStart = System.nanoTime();
+        addOneAtATime(singleUsers);
+        long singleNanos = System.nanoTime() - singleStart;
+
+        List<UserDto> bulkUsers = users("bulk", USERS_COUNT);
+        long bulkStart = System.nanoTime();
+        BulkImportResult result = userImportService.importUsers(bulkUsers.iterator());
+        long bulkNanos = System.nanoTime() - bulkStart;
+
+        System.out.printf("one-at-a-time: %d users in %d ms (%.0f users/s)%n",
+                USERS_COUNT, singleNanos / 1_000_000, USERS_COUNT * 1e9 / singleNanos);
+        System.out.printf("bulk:          %d users in %d ms (%.0f users/s)%n",
+                USERS_COUNT, bulkNanos / 1_000_000, USERS_COUNT * 1e9 / bulkNanos);
+
+        assertThat(result.getErrors()).isEmpty();
+        assertThat(result.getCreated()).isEqualTo(USERS_COUNT);
+    }
+
+    private void addOneAtATime(List<UserDto> users) {
+        users.forEach(userService::addUserWithRoles);
+    }
+
+    private static List<UserDto> users(String prefix, int count) {
+        List<UserDto> users = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            users.add(new UserDto(null, "first" + i, "last" + i, 20 + i % 50,
+                    prefix + "-" + i + "@mail.ru", "password", Set.of(new RoleDto("USER"))));
+        }
+        return users;
+    }
+
+}
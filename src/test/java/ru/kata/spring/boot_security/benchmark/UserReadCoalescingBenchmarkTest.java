@@ -0,0 +1,158 @@
+package ru.kata.spring.boot_security.benchmark;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import ru.kata.spring.boot_security.SpringBootSecurity;
+import ru.kata.spring.boot_security.dto.RoleDto;
+import ru.kata.spring.boot_security.dto.UserDto;
+import ru.kata.spring.boot_security.service.UserService;
+
+import javax.persistence.EntityManagerFactory;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Проверяет объединение одновременных одинаковых запросов (UserJsonCache) под нагрузкой:
+ * после изменения пользователя одновременно отправляется concurrency запросов страницы
+ * /api/admin/all-users и столько же запросов /api/admin/current-user, и считается количество
+ * SQL-запросов к базе данных. Каждый SQL-запрос задерживается на 20 мс
+ * (VirtualThreadsLoadBenchmarkTest.LatencyConfig), чтобы запросы гарантированно пересекались.
+ * Количество SQL-запросов не должно зависеть от одновременности.
+ * Запуск: mvn test -P benchmark -Dtest=UserReadCoalescingBenchmarkTest (нужен JDK 21)
+ */
+@Tag("benchmark")
+class UserReadCoalescingBenchmarkTest {
+
+    private static final int[] CONCURRENCY_LEVELS = {1, 10, 50, 200};
+
+    private static final Pattern CSRF_INPUT = Pattern.compile("name=\"_csrf\"\\s+value=\"([^\"]+)\"");
+
+    private final HttpClient httpClient = HttpClient.newBuilder()
+            .followRedirects(HttpClient.Redirect.NEVER)
+            .build();
+
+    @Test
+    void databaseQueriesStayFlatAsConcurrencyGrows() throws Exception {
+        try (ConfigurableApplicationContext context = start()) {
+            String baseUrl = "http://localhost:" + ((WebServerApplicationContext) context).getWebServer().getPort();
+            UserService userService = context.getBean(UserService.class);
+            Statistics statistics = context.getBean(EntityManagerFactory.class)
+                    .unwrap(SessionFactory.class).getStatistics();
+            String session = login(baseUrl);
+
+            Map<Integer, Long> queries = new LinkedHashMap<>();
+            for (int concurrency : CONCURRENCY_LEVELS) {
+                userService.addUserWithRoles(new UserDto(null, "Load", "Test", 30,
+                        "load-" + concurrency + "@mail.ru", "password", Set.of(new RoleDto("USER"))));
+                statistics.clear();
+                long start = System.nanoTime();
+                burst(concurrency, List.of(
+                        () -> get(baseUrl + "/api/admin/all-users?limit=100", session),
+                        () -> get(baseUrl + "/api/admin/current-user", session)));
+                long elapsed = System.nanoTime() - start;
+                queries.put(concurrency, statistics.getPrepareStatementCount());
+                System.out.printf("concurrency %4d  requests %4d  sql queries %3d  %5d ms%n",
+                        concurrency, concurrency * 2, statistics.getPrepareStatementCount(), elapsed / 1_000_000);
+            }
+            assertThat(queries.values()).containsOnly(queries.get(CONCURRENCY_LEVELS[0]));
+        }
+    }
+
+    private static ConfigurableApplicationContext start() {
+        return new SpringApplicationBuilder(SpringBootSecurity.class,
+                VirtualThreadsLoadBenchmarkTest.LatencyConfig.class)
+                .run("--spring.profiles.active=test",
+                        "--server.port=0",
+                        "--app.security.bcrypt-strength=4",
+                        "--app.security.login-rate-limit.enabled=false",
+                        "--app.threads.virtual=true",
+                        "--spring.datasource.url=jdbc:h2:mem:coalescing;DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE",
+                        "--logging.level.root=WARN");
+    }
+
+    /**
+     * Запускает concurrency копий каждого запроса одновременно и ждет их завершения.
+     */
+    private static void burst(int concurrency, List<Request> requests) throws Exception {
+        CountDownLatch startSignal = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        try (ExecutorService clients = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < concurrency; i++) {
+                for (Request request : requests) {
+                    futures.add(clients.submit(() -> {
+                        startSignal.await();
+                        return request.execute();
+                    }));
+                }
+            }
+            startSignal.countDown();
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        }
+    }
+
+    private String get(String url, String session) throws Exception {
+        HttpResponse<String> response = httpClient.send(HttpRequest.newBuilder(URI.create(url))
+                        .header("Cookie", session)
+                        .build(),
+                HttpResponse.BodyHandlers.ofString());
+        assertThat(response.statusCode()).isEqualTo(200);
+        return response.body();
+    }
+
+    /**
+     * Вход через форму.
+     *
+     * @return cookie сессии после входа.
+     */
+    private String login(String baseUrl) throws Exception {
+        HttpResponse<String> page = httpClient.send(HttpRequest.newBuilder(URI.create(baseUrl + "/login")).build(),
+                HttpResponse.BodyHandlers.ofString());
+        Matcher csrf = CSRF_INPUT.matcher(page.body());
+        assertThat(csrf.find()).isTrue();
+        String form = "username=admin%40mail.ru&password=admin&_csrf="
+                + URLEncoder.encode(csrf.group(1), StandardCharsets.UTF_8);
+        HttpResponse<Void> response = httpClient.send(HttpRequest.newBuilder(URI.create(baseUrl + "/login"))
+                        .header("Cookie", sessionCookie(page))
+                        .header("Content-Type", "application/x-www-form-urlencoded")
+                        .POST(HttpRequest.BodyPublishers.ofString(form))
+                        .build(),
+                HttpResponse.BodyHandlers.discarding());
+        assertThat(response.statusCode()).isEqualTo(302);
+        return sessionCookie(response);
+    }
+
+    private static String sessionCookie(HttpResponse<?> response) {
+        String setCookie = response.headers().firstValue("Set-Cookie").orElseThrow();
+        return setCookie.substring(0, setCookie.indexOf(';'));
+    }
+
+    @FunctionalInterface
+    private interface Request {
+        Object execute() throws Exception;
+    }
+
+}
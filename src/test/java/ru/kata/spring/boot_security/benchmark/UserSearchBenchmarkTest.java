@@ -0,0 +1,142 @@
+package ru.kata.spring.boot_security.benchmark;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.kata.spring.boot_security.dto.UserSearchFilter;
+import ru.kata.spring.boot_security.dto.UserView;
+import ru.kata.spring.boot_security.service.UserService;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Поиск пользователей по началу имени, фамилии или email на таблице из USERS_COUNT строк
+ * (встроенная база данных H2). Сравнивает запросы по индексу каждой колонки (UserSearchRepository)
+ * с одним запросом, где все условия записаны через OR и "параметр is null or ...",
+ * и печатает планы выполнения (EXPLAIN) запроса по каждой колонке и общего запроса.
+ * Запуск: mvn test -P benchmark -Dtest=UserSearchBenchmarkTest
+ */
+@Tag("benchmark")
+@SpringBootTest(properties = "app.security.bcrypt-strength=4")
+@ActiveProfiles("test")
+class UserSearchBenchmarkTest {
+
+    private static final int USERS_COUNT = 1_000_000;
+
+    private static final int BATCH_SIZE = 10_000;
+
+    private static final long FIRST_ID = 10_000_000L;
+
+    private static final int RUNS = 50;
+
+    private static final String PREFIX = "kqz";
+
+    /**
+     * Общий запрос, в котором оптимизатор не может выбрать индекс по prefix.
+     */
+    private static final String CATCH_ALL_QUERY = "select u.id from users u where u.id > :afterId"
+            + " and (:prefix is null or u.firstname like :prefix escape '!'"
+            + " or u.lastname like :prefix escape '!' or u.email like :prefix escape '!')"
+            + " and (:minAge is null or u.age >= :minAge)"
+            + " and (:maxAge is null or u.age <= :maxAge)"
+            + " order by u.id";
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Test
+    void compareIndexRangeQueriesWithCatchAllQuery() {
+        insertUsers();
+
+        for (String column : List.of("firstname", "lastname", "email")) {
+            for (long afterId : new long[]{0, FIRST_ID + USERS_COUNT / 2}) {
+                String plan = explain("select id from users where deleted_at is null and id > " + afterId
+                        + " and " + column + " like '" + PREFIX + "%' escape '!' order by id limit 100");
+                System.out.println("EXPLAIN " + column + " after " + afterId + ": " + plan);
+                assertThat(plan).containsIgnoringCase("idx_users_deleted_at_" + column);
+            }
+        }
+        System.out.println("EXPLAIN catch-all: " + explain("select id from users where deleted_at is null and id > 0"
+                + " and ('" + PREFIX + "%' is null or firstname like '" + PREFIX + "%' escape '!'"
+                + " or lastname like '" + PREFIX + "%' escape '!' or email like '" + PREFIX + "%' escape '!')"
+                + " order by id limit 100"));
+
+        UserSearchFilter filter = new UserSearchFilter(PREFIX, null, null, null);
+        List<Long> indexed = measure("index range queries", () ->
+                userService.searchUsers(filter, 0L, 100).stream().map(UserView::id).toList());
+        List<Long> catchAll = measure("catch-all query", () -> transactionTemplate.execute(status ->
+                entityManager.createQuery(CATCH_ALL_QUERY, Long.class)
+                        .setParameter("afterId", 0L)
+                        .setParameter("prefix", PREFIX + "%")
+                        .setParameter("minAge", null)
+                        .setParameter("maxAge", null)
+                        .setMaxResults(100)
+                        .getResultList()));
+
+        assertThat(indexed).isNotEmpty().isEqualTo(catchAll);
+    }
+
+    /**
+     * Имена, фамилии и email - случайные строки из 6 букв, поэтому префикс из 3 букв
+     * встречается примерно в USERS_COUNT / 26^3 строках каждой колонки.
+     */
+    private void insertUsers() {
+        Random random = new Random(42);
+        long start = System.nanoTime();
+        for (int offset = 0; offset < USERS_COUNT; offset += BATCH_SIZE) {
+            List<Object[]> rows = new ArrayList<>(BATCH_SIZE);
+            for (int i = 0; i < BATCH_SIZE; i++) {
+                long id = FIRST_ID + offset + i;
+                rows.add(new Object[]{id, word(random), word(random), 18 + random.nextInt(60),
+                        word(random) + id + "@mail.ru"});
+            }
+            jdbcTemplate.batchUpdate("insert into users (id, version, firstname, lastname, age, email, password,"
+                    + " enabled) values (?, 0, ?, ?, ?, ?, 'password', true)", rows);
+        }
+        jdbcTemplate.execute("analyze");
+        System.out.printf("inserted %d users in %d ms%n", USERS_COUNT, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    private String explain(String sql) {
+        return String.join(" ", jdbcTemplate.queryForList("explain " + sql, String.class)).replaceAll("\\s+", " ");
+    }
+
+    private static <T> T measure(String name, Supplier<T> query) {
+        T result = query.get();
+        long start = System.nanoTime();
+        for (int i = 0; i < RUNS; i++) {
+            result = query.get();
+        }
+        System.out.printf("%-20s %8.2f ms per search%n", name, (System.nanoTime() - start) / 1e6 / RUNS);
+        return result;
+    }
+
+    private static String word(Random random) {
+        char[] letters = new char[6];
+        for (int i = 0; i < letters.length; i++) {
+            letters[i] = (char) ('a' + random.nextInt(26));
+        }
+        return new String(letters);
+    }
+
+}
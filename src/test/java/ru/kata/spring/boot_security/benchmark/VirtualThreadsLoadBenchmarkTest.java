@@ -0,0 +1,218 @@
+package ru.kata.spring.boot_security.benchmark;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Bean;
+import ru.kata.spring.boot_security.SpringBootSecurity;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Сравнивает обработку запросов в потоках платформы и в виртуальных потоках (app.threads.virtual)
+ * при медленной базе данных: каждый SQL-запрос задерживается на DB_LATENCY_MILLIS.
+ * Сценарии: вход через форму (кэш пользователей отключен, поэтому каждый вход читает базу данных)
+ * и страница /api/admin/all-users в одной сессии.
+ * Пул Tomcat уменьшен до TOMCAT_THREADS, пул соединений больше него,
+ * поэтому в режиме потоков платформы одновременность ограничивает пул Tomcat.
+ * Запуск: mvn test -P benchmark -Dtest=VirtualThreadsLoadBenchmarkTest (нужен JDK 21)
+ */
+@Tag("benchmark")
+class VirtualThreadsLoadBenchmarkTest {
+
+    private static final long DB_LATENCY_MILLIS = 20;
+
+    private static final int TOMCAT_THREADS = 20;
+
+    private static final int DB_POOL_SIZE = 60;
+
+    private static final int CONCURRENCY = 200;
+
+    private static final int REQUESTS = 2000;
+
+    private static final Pattern CSRF_INPUT = Pattern.compile("name=\"_csrf\"\\s+value=\"([^\"]+)\"");
+
+    private final HttpClient httpClient = HttpClient.newBuilder()
+            .followRedirects(HttpClient.Redirect.NEVER)
+            .build();
+
+    @Test
+    void comparePlatformAndVirtualThreads() throws Exception {
+        for (boolean virtual : new boolean[]{false, true}) {
+            try (ConfigurableApplicationContext context = start(virtual)) {
+                String baseUrl = "http://localhost:" + ((WebServerApplicationContext) context).getWebServer().getPort();
+                String mode = virtual ? "virtual " : "platform";
+
+                run(mode + " login    (warmup)", REQUESTS / 4, () -> login(baseUrl));
+                run(mode + " login   ", REQUESTS, () -> login(baseUrl));
+
+                String session = login(baseUrl);
+                run(mode + " all-users (warmup)", REQUESTS / 4, () -> allUsers(baseUrl, session));
+                run(mode + " all-users", REQUESTS, () -> allUsers(baseUrl, session));
+            }
+        }
+    }
+
+    private static ConfigurableApplicationContext start(boolean virtual) {
+        return new SpringApplicationBuilder(SpringBootSecurity.class, LatencyConfig.class)
+                .run("--spring.profiles.active=test",
+                        "--server.port=0",
+                        "--app.security.bcrypt-strength=4",
+                        "--app.security.user-cache.max-size=0",
+                        "--app.security.login-rate-limit.enabled=false",
+                        "--app.threads.virtual=" + virtual,
+                        "--server.tomcat.threads.max=" + TOMCAT_THREADS,
+                        "--spring.datasource.hikari.maximum-pool-size=" + DB_POOL_SIZE,
+                        "--spring.datasource.url=jdbc:h2:mem:load-" + virtual
+                                + ";DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE",
+                        "--logging.level.root=WARN");
+    }
+
+    /**
+     * Выполняет requests запросов, не более CONCURRENCY одновременно, и печатает
+     * пропускную способность и задержки (p50, p99).
+     */
+    private static void run(String name, int requests, Request request) throws Exception {
+        Semaphore permits = new Semaphore(CONCURRENCY);
+        long[] latencies = new long[requests];
+        List<Future<?>> futures = new ArrayList<>(requests);
+        long start = System.nanoTime();
+        try (ExecutorService clients = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < requests; i++) {
+                int index = i;
+                permits.acquire();
+                futures.add(clients.submit(() -> {
+                    try {
+                        long requestStart = System.nanoTime();
+                        request.execute();
+                        latencies[index] = System.nanoTime() - requestStart;
+                        return null;
+                    } finally {
+                        permits.release();
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+        Arrays.sort(latencies);
+        System.out.printf("%-28s %6.0f req/s  p50 %4d ms  p99 %4d ms%n", name,
+                requests * 1e9 / elapsed,
+                latencies[requests / 2] / 1_000_000,
+                latencies[requests * 99 / 100] / 1_000_000);
+    }
+
+    /**
+     * Вход через форму: страница входа (сессия и CSRF-токен), затем POST /login.
+     *
+     * @return cookie сессии после входа.
+     */
+    private String login(String baseUrl) throws Exception {
+        HttpResponse<String> page = httpClient.send(HttpRequest.newBuilder(URI.create(baseUrl + "/login")).build(),
+                HttpResponse.BodyHandlers.ofString());
+        Matcher csrf = CSRF_INPUT.matcher(page.body());
+        assertThat(csrf.find()).isTrue();
+        String form = "username=admin%40mail.ru&password=admin&_csrf="
+                + URLEncoder.encode(csrf.group(1), StandardCharsets.UTF_8);
+        HttpResponse<Void> response = httpClient.send(HttpRequest.newBuilder(URI.create(baseUrl + "/login"))
+                        .header("Cookie", sessionCookie(page))
+                        .header("Content-Type", "application/x-www-form-urlencoded")
+                        .POST(HttpRequest.BodyPublishers.ofString(form))
+                        .build(),
+                HttpResponse.BodyHandlers.discarding());
+        assertThat(response.headers().firstValue("Location")).hasValueSatisfying(location ->
+                assertThat(location).endsWith("/admin"));
+        return sessionCookie(response);
+    }
+
+    private String allUsers(String baseUrl, String session) throws Exception {
+        HttpResponse<String> response = httpClient.send(
+                HttpRequest.newBuilder(URI.create(baseUrl + "/api/admin/all-users?limit=100"))
+                        .header("Cookie", session)
+                        .build(),
+                HttpResponse.BodyHandlers.ofString());
+        assertThat(response.statusCode()).isEqualTo(200);
+        return response.body();
+    }
+
+    private static String sessionCookie(HttpResponse<?> response) {
+        String setCookie = response.headers().firstValue("Set-Cookie").orElseThrow();
+        return setCookie.substring(0, setCookie.indexOf(';'));
+    }
+
+    @FunctionalInterface
+    private interface Request {
+        Object execute() throws Exception;
+    }
+
+    /**
+     * Задерживает выполнение каждого SQL-запроса на DB_LATENCY_MILLIS,
+     * как при удаленной или перегруженной базе данных.
+     * Не помечен @Configuration, чтобы не попасть в сканирование компонентов других тестов.
+     */
+    static class LatencyConfig {
+
+        @Bean
+        static BeanPostProcessor latencyInjectingDataSourcePostProcessor() {
+            return new BeanPostProcessor() {
+                @Override
+                public Object postProcessAfterInitialization(Object bean, String beanName) {
+                    return bean instanceof DataSource dataSource ? slow(dataSource, DataSource.class) : bean;
+                }
+            };
+        }
+
+        @SuppressWarnings("unchecked")
+        private static <T> T slow(T target, Class<T> type) {
+            return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, (proxy, method, args) -> {
+                if (method.getName().startsWith("execute") && Statement.class.isAssignableFrom(type)) {
+                    Thread.sleep(DB_LATENCY_MILLIS);
+                }
+                Object result = invoke(target, method, args);
+                if (result instanceof Statement && method.getReturnType().isInterface()) {
+                    return slow(result, (Class<Object>) method.getReturnType());
+                }
+                if (result instanceof Connection connection) {
+                    return slow(connection, Connection.class);
+                }
+                return result;
+            });
+        }
+
+        private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+            try {
+                return method.invoke(target, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+
+}
@@ -0,0 +1,119 @@
+package ru.kata.spring.boot_security.cache;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import ru.kata.spring.boot_security.dto.RoleDto;
+import ru.kata.spring.boot_security.dto.UserDto;
+import ru.kata.spring.boot_security.event.UserChangedEvent;
+import ru.kata.spring.boot_security.service.UserService;
+
+import java.time.Duration;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestBuilders.formLogin;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.redirectedUrl;
+
+/**
+ * Проверяет кэш пользователей для входа: вытеснение давно не использованных записей, TTL,
+ * копирование при чтении, удаление после изменения пользователя и отказ сохранять пользователя,
+ * загруженного до изменения.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class BoundedUserCacheTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private BoundedUserCache userCache;
+
+    @Test
+    void leastRecentlyUsedEntryIsEvicted() {
+        BoundedUserCache cache = new BoundedUserCache(2, Duration.ofMinutes(5));
+        cache.putUserInCache(user("a@mail.ru"));
+        cache.putUserInCache(user("b@mail.ru"));
+        cache.getUserFromCache("a@mail.ru");
+        cache.putUserInCache(user("c@mail.ru"));
+
+        assertThat(cache.size()).isEqualTo(2);
+        assertThat(cache.getUserFromCache("a@mail.ru")).isNotNull();
+        assertThat(cache.getUserFromCache("b@mail.ru")).isNull();
+        assertThat(cache.getUserFromCache("c@mail.ru")).isNotNull();
+    }
+
+    @Test
+    void expiredEntryIsNotReturned() throws InterruptedException {
+        BoundedUserCache cache = new BoundedUserCache(10, Duration.ofMillis(50));
+        cache.putUserInCache(user("a@mail.ru"));
+        Thread.sleep(100);
+
+        assertThat(cache.getUserFromCache("a@mail.ru")).isNull();
+        assertThat(cache.size()).isZero();
+    }
+
+    @Test
+    void returnedUserIsCopy() {
+        BoundedUserCache cache = new BoundedUserCache(10, Duration.ofMinutes(5));
+        cache.putUserInCache(user("a@mail.ru"));
+        ((User) cache.getUserFromCache("a@mail.ru")).eraseCredentials();
+
+        assertThat(cache.getUserFromCache("a@mail.ru").getPassword()).isEqualTo("hash");
+    }
+
+    @Test
+    void userChangeEvictsCurrentAndPreviousEmail() {
+        BoundedUserCache cache = new BoundedUserCache(10, Duration.ofMinutes(5));
+        cache.putUserInCache(user("a@mail.ru"));
+        cache.putUserInCache(user("old@mail.ru"));
+        cache.onUserChanged(new UserChangedEvent(UserChangedEvent.Type.UPDATED, 1L, "a@mail.ru", "old@mail.ru"));
+
+        assertThat(cache.size()).isZero();
+    }
+
+    @Test
+    void userLoadedBeforeChangeIsNotCached() {
+        BoundedUserCache cache = new BoundedUserCache(10, Duration.ofMinutes(5));
+        assertThat(cache.getUserFromCache("a@mail.ru")).isNull();
+        cache.onUserChanged(new UserChangedEvent(UserChangedEvent.Type.UPDATED, 1L, "a@mail.ru", null));
+        cache.putUserInCache(user("a@mail.ru"));
+        assertThat(cache.getUserFromCache("a@mail.ru")).isNull();
+
+        cache.putUserInCache(user("a@mail.ru"));
+        assertThat(cache.getUserFromCache("a@mail.ru")).isNotNull();
+    }
+
+    @Test
+    void oldPasswordIsRejectedAfterChange() throws Exception {
+        userService.addUserWithRoles(new UserDto(null, "cache", "user", 30, "cache-user@mail.ru", "old",
+                Set.of(new RoleDto("USER"))));
+        mockMvc.perform(formLogin().user("cache-user@mail.ru").password("old"))
+                .andExpect(redirectedUrl("/user"));
+        assertThat(userCache.getUserFromCache("cache-user@mail.ru")).isNotNull();
+
+        Long id = userService.findByEmail("cache-user@mail.ru").getId();
+        userService.updateUserWithRoles(new UserDto(id, "cache", "user", 30, "cache-user@mail.ru", "new",
+                Set.of(new RoleDto("USER"))));
+
+        mockMvc.perform(formLogin().user("cache-user@mail.ru").password("old"))
+                .andExpect(redirectedUrl("/login?error"));
+        mockMvc.perform(formLogin().user("cache-user@mail.ru").password("new"))
+                .andExpect(redirectedUrl("/user"));
+    }
+
+    private static UserDetails user(String email) {
+        return User.withUsername(email).password("hash").roles("USER").build();
+    }
+
+}
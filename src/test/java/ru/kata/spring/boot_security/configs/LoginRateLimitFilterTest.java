@@ -0,0 +1,98 @@
+package ru.kata.spring.boot_security.configs;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+
+import javax.persistence.EntityManagerFactory;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.httpBasic;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.redirectedUrl;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.redirectedUrlPattern;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Проверяет, что попытки входа сверх лимита по IP-адресу или по email
+ * (через форму или заголовок HTTP Basic на любой адрес) отклоняются с 429 до обращения к базе данных.
+ */
+@SpringBootTest(properties = "app.security.login-rate-limit.attempts=3")
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class LoginRateLimitFilterTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Test
+    void attemptsOverLimitAreRejectedBeforeAuthentication() throws Exception {
+        for (int i = 0; i < 3; i++) {
+            mockMvc.perform(login("user@mail.ru", "wrong", "10.0.0." + i))
+                    .andExpect(redirectedUrl("/login?error"));
+        }
+
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        mockMvc.perform(login("user@mail.ru", "user", "10.0.0.10"))
+                .andExpect(status().isTooManyRequests())
+                .andExpect(header().exists(HttpHeaders.RETRY_AFTER));
+        assertThat(statistics.getPrepareStatementCount()).isZero();
+
+        for (int i = 0; i < 3; i++) {
+            mockMvc.perform(login("nobody-" + i + "@mail.ru", "wrong", "10.0.1.1"))
+                    .andExpect(redirectedUrl("/login?error"));
+        }
+        mockMvc.perform(login("admin@mail.ru", "admin", "10.0.1.1"))
+                .andExpect(status().isTooManyRequests());
+        mockMvc.perform(login("admin@mail.ru", "admin", "10.0.1.2"))
+                .andExpect(redirectedUrl("/admin"));
+    }
+
+    @Test
+    void basicCredentialsOnAnyUrlAreThrottled() throws Exception {
+        for (int i = 0; i < 3; i++) {
+            mockMvc.perform(basic("/api/user/current", "10.0.2." + i))
+                    .andExpect(redirectedUrlPattern("**/login"));
+        }
+        mockMvc.perform(basic("/api/user/current", "10.0.2.10"))
+                .andExpect(status().isTooManyRequests())
+                .andExpect(header().exists(HttpHeaders.RETRY_AFTER));
+        mockMvc.perform(basic("/actuator/metrics", "10.0.2.11"))
+                .andExpect(status().isTooManyRequests());
+    }
+
+    private static MockHttpServletRequestBuilder basic(String url, String remoteAddr) {
+        return get(url)
+                .with(httpBasic("basic@mail.ru", "wrong"))
+                .with(request -> {
+                    request.setRemoteAddr(remoteAddr);
+                    return request;
+                });
+    }
+
+    private static MockHttpServletRequestBuilder login(String email, String password, String remoteAddr) {
+        return post("/login")
+                .param("username", email)
+                .param("password", password)
+                .with(csrf())
+                .with(request -> {
+                    request.setRemoteAddr(remoteAddr);
+                    return request;
+                });
+    }
+
+}
@@ -0,0 +1,129 @@
+package ru.kata.spring.boot_security.configs;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.kata.spring.boot_security.dto.RoleDto;
+import ru.kata.spring.boot_security.dto.UserDto;
+import ru.kata.spring.boot_security.dto.UserSearchFilter;
+import ru.kata.spring.boot_security.repository.UserRepository;
+import ru.kata.spring.boot_security.service.UserService;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.hasItem;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+/**
+ * Проверяет, что транзакции только для чтения выполняются на реплике,
+ * а остальные - на основной базе данных.
+ * Реплика - отдельная база H2, в которую перед каждым тестом копируется основная база,
+ * поэтому изменения, сделанные в тесте, реплика не видит, как отстающая реплика.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:kata-primary-test;DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE",
+        "app.datasource.replica.url=jdbc:h2:mem:kata-replica-test;DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE"
+})
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class ReadReplicaDataSourceConfigTest {
+
+    private static final long TIMEOUT_MILLIS = 5_000;
+
+    @Autowired
+    @Qualifier("primaryDataSource")
+    private HikariDataSource primaryDataSource;
+
+    @Autowired
+    @Qualifier("replicaDataSource")
+    private HikariDataSource replicaDataSource;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    /**
+     * Сначала ждет, пока фоновые задачи предыдущего теста (журнал аудита, рассылка событий)
+     * вернут соединения основного пула.
+     */
+    @BeforeEach
+    void copyPrimaryToReplica(@TempDir Path directory) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        while (primaryDataSource.getHikariPoolMXBean().getActiveConnections() > 0
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        String script = directory.resolve("primary.sql").toString();
+        new JdbcTemplate(primaryDataSource).execute("script to '" + script + "'");
+        JdbcTemplate replica = new JdbcTemplate(replicaDataSource);
+        replica.execute("drop all objects");
+        replica.execute("runscript from '" + script + "'");
+    }
+
+    @Test
+    void readOnlyTransactionsUseReplica() {
+        TransactionTemplate readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+        readOnly.executeWithoutResult(status -> {
+            assertThat(userRepository.findAllByEmailIn(List.of("admin@mail.ru"))).hasSize(1);
+            assertThat(replicaDataSource.getHikariPoolMXBean().getActiveConnections()).isEqualTo(1);
+            assertThat(primaryDataSource.getHikariPoolMXBean().getActiveConnections()).isZero();
+        });
+
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            assertThat(userRepository.findAllByEmailIn(List.of("admin@mail.ru"))).hasSize(1);
+            assertThat(primaryDataSource.getHikariPoolMXBean().getActiveConnections()).isEqualTo(1);
+            assertThat(replicaDataSource.getHikariPoolMXBean().getActiveConnections()).isZero();
+        });
+    }
+
+    @Test
+    @WithMockUser(username = "admin@mail.ru", roles = "ADMIN")
+    void versionedReadsUsePrimaryWhenReplicaIsStale() throws Exception {
+        String etag = mockMvc.perform(get("/api/admin/all-users"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        MockHttpServletResponse events = mockMvc.perform(get("/api/admin/users/events"))
+                .andExpect(request().asyncStarted())
+                .andReturn().getResponse();
+
+        userService.addUserWithRoles(new UserDto(null, "replica", "lag", 30, "replica-lag@mail.ru", "password",
+                Set.of(new RoleDto("USER"))));
+        assertThat(userService.searchUsers(new UserSearchFilter("replica-lag", null, null, null), 0L, 10)).isEmpty();
+
+        mockMvc.perform(get("/api/admin/all-users").header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[*].email", hasItem("replica-lag@mail.ru")));
+        long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        while (!events.getContentAsString().contains("replica-lag@mail.ru") && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        assertThat(events.getContentAsString()).contains("event:upsert", "replica-lag@mail.ru");
+    }
+
+}
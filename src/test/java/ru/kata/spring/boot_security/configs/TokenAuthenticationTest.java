@@ -0,0 +1,101 @@
+package ru.kata.spring.boot_security.configs;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import ru.kata.spring.boot_security.dto.RoleDto;
+import ru.kata.spring.boot_security.dto.TokenResponse;
+import ru.kata.spring.boot_security.dto.UserDto;
+import ru.kata.spring.boot_security.service.UserService;
+
+import javax.persistence.EntityManagerFactory;
+import javax.servlet.http.Cookie;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestBuilders.formLogin;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.httpBasic;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+/**
+ * Проверяет режим без HTTP-сессий: вход выдает токен в cookie,
+ * запросы аутентифицируются по токену без обращения к базе данных,
+ * а после изменения пользователя его токены отклоняются.
+ */
+@SpringBootTest(properties = "app.security.token.enabled=true")
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class TokenAuthenticationTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Test
+    void formLoginIssuesTokenCookieWithoutSession() throws Exception {
+        MvcResult login = mockMvc.perform(formLogin().user("admin@mail.ru").password("admin"))
+                .andExpect(redirectedUrl("/admin"))
+                .andExpect(cookie().httpOnly("access_token", true))
+                .andReturn();
+        assertThat(login.getRequest().getSession(false)).isNull();
+
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        mockMvc.perform(get("/api/admin/current-user").cookie(login.getResponse().getCookie("access_token")))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.email").value("admin@mail.ru"));
+        assertThat(statistics.getPrepareStatementCount()).isZero();
+    }
+
+    @Test
+    void bearerTokenIsRevokedAfterUserUpdate() throws Exception {
+        userService.addUserWithRoles(new UserDto(null, "token", "user", 30, "token-user@mail.ru", "password",
+                Set.of(new RoleDto("USER"))));
+        String response = mockMvc.perform(post("/api/token").with(httpBasic("token-user@mail.ru", "password")))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        String bearer = "Bearer " + objectMapper.readValue(response, TokenResponse.class).token();
+
+        mockMvc.perform(get("/api/user/current").with(httpBasic("token-user@mail.ru", "password")))
+                .andExpect(status().isUnauthorized());
+        mockMvc.perform(get("/api/user/current").header(HttpHeaders.AUTHORIZATION, bearer))
+                .andExpect(status().isOk());
+        mockMvc.perform(get("/api/admin/all-users").header(HttpHeaders.AUTHORIZATION, bearer))
+                .andExpect(status().isForbidden());
+
+        UserDto user = new UserDto(userService.findByEmail("token-user@mail.ru").getId(), "token", "renamed", 30,
+                "token-user@mail.ru", null, Set.of(new RoleDto("USER")));
+        userService.updateUserWithRoles(user);
+
+        mockMvc.perform(get("/api/user/current").header(HttpHeaders.AUTHORIZATION, bearer))
+                .andExpect(status().isUnauthorized());
+    }
+
+    @Test
+    void invalidCookieIsClearedAndPageRedirectsToLogin() throws Exception {
+        mockMvc.perform(get("/admin").accept(MediaType.TEXT_HTML).cookie(new Cookie("access_token", "garbage")))
+                .andExpect(status().is3xxRedirection())
+                .andExpect(redirectedUrlPattern("**/login"))
+                .andExpect(cookie().maxAge("access_token", 0));
+    }
+
+}
@@ -0,0 +1,74 @@
+package ru.kata.spring.boot_security.controller;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpSession;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import ru.kata.spring.boot_security.dto.RoleDto;
+import ru.kata.spring.boot_security.dto.UserDto;
+import ru.kata.spring.boot_security.service.UserService;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Проверяет, что страница администратора содержит начальные данные (JSON island),
+ * повторно отрисовывается без запросов к базе данных и отвечает 304, пока данные не изменились.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class AdminControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Test
+    void adminPageEmbedsInitialDataCachedPerDataVersion() throws Exception {
+        MockHttpSession session = new MockHttpSession();
+        MvcResult first = mockMvc.perform(get("/admin").session(session).with(user("admin@mail.ru").roles("ADMIN")))
+                .andExpect(status().isOk())
+                .andReturn();
+        String page = first.getResponse().getContentAsString();
+        String etag = first.getResponse().getHeader(HttpHeaders.ETAG);
+        assertThat(page).contains("id=\"current-user-data\"", "\"email\":\"admin@mail.ru\"", "data-event-id=");
+        assertThat(page).contains("id=\"users-data\"", "\"email\":\"user@mail.ru\"");
+
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        mockMvc.perform(get("/admin").session(session).with(user("admin@mail.ru").roles("ADMIN")))
+                .andExpect(status().isOk());
+        assertThat(statistics.getPrepareStatementCount()).isZero();
+
+        mockMvc.perform(get("/admin").session(session).with(user("admin@mail.ru").roles("ADMIN"))
+                        .header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified());
+
+        userService.addUserWithRoles(new UserDto(null, "<script>", "island", 30, "island@mail.ru", "password",
+                Set.of(new RoleDto("USER"))));
+        String changed = mockMvc.perform(get("/admin").session(session).with(user("admin@mail.ru").roles("ADMIN"))
+                        .header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        assertThat(changed).contains("\"firstname\":\"\\u003cscript\\u003e\"").doesNotContain("\"<script>\"");
+    }
+
+}
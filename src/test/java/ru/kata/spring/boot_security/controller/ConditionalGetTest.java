@@ -0,0 +1,103 @@
+package ru.kata.spring.boot_security.controller;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import ru.kata.spring.boot_security.dto.RoleDto;
+import ru.kata.spring.boot_security.dto.UserDto;
+import ru.kata.spring.boot_security.service.UserService;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Проверяет ETag ответов REST API: повторный запрос с If-None-Match получает 304
+ * без запросов к базе данных, а после изменения пользователей - 200 с новым ETag.
+ * Страницы с limit больше максимального размера отдаются из одной записи кэша.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class ConditionalGetTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Test
+    void allUsersSupportsConditionalGet() throws Exception {
+        assertConditionalGet("/api/admin/all-users?limit=10", "etag-all-users@mail.ru");
+    }
+
+    @Test
+    void limitsAboveMaxPageSizeShareCachedPage() throws Exception {
+        String page = mockMvc.perform(get("/api/admin/all-users?limit=500")
+                        .with(user("admin@mail.ru").roles("ADMIN")))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        for (String limit : new String[]{"1000", "2147483647"}) {
+            String samePage = mockMvc.perform(get("/api/admin/all-users?afterId=-1&limit=" + limit)
+                            .with(user("admin@mail.ru").roles("ADMIN")))
+                    .andExpect(status().isOk())
+                    .andReturn().getResponse().getContentAsString();
+            assertThat(samePage).isEqualTo(page);
+        }
+        assertThat(statistics.getPrepareStatementCount()).isZero();
+    }
+
+    @Test
+    void adminCurrentUserSupportsConditionalGet() throws Exception {
+        assertConditionalGet("/api/admin/current-user", "etag-admin-current@mail.ru");
+    }
+
+    @Test
+    void userCurrentSupportsConditionalGet() throws Exception {
+        assertConditionalGet("/api/user/current", "etag-user-current@mail.ru");
+    }
+
+    /**
+     * @param addedEmail email пользователя, добавление которого меняет данные пользователей.
+     */
+    private void assertConditionalGet(String url, String addedEmail) throws Exception {
+        String etag = mockMvc.perform(get(url).with(user("admin@mail.ru").roles("ADMIN", "USER")))
+                .andExpect(status().isOk())
+                .andExpect(header().exists(HttpHeaders.ETAG))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        mockMvc.perform(get(url).with(user("admin@mail.ru").roles("ADMIN", "USER"))
+                        .header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified());
+        assertThat(statistics.getPrepareStatementCount()).isZero();
+
+        userService.addUserWithRoles(new UserDto(null, "etag", "user", 30, addedEmail, "password",
+                Set.of(new RoleDto("USER"))));
+        String changedEtag = mockMvc.perform(get(url).with(user("admin@mail.ru").roles("ADMIN", "USER"))
+                        .header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        assertThat(changedEtag).isNotNull().isNotEqualTo(etag);
+    }
+
+}
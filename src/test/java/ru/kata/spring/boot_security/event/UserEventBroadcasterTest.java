@@ -0,0 +1,98 @@
+package ru.kata.spring.boot_security.event;
+
+import org.junit.jupiter.api.MethodOrderer;
+import org.junit.jupiter.api.Order;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestMethodOrder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import ru.kata.spring.boot_security.dto.RoleDto;
+import ru.kata.spring.boot_security.dto.UserDto;
+import ru.kata.spring.boot_security.service.UserService;
+
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+
+/**
+ * Проверяет, что страница администратора получает изменения пользователей
+ * через Server-Sent Events в виде отдельных строк, а не перезагрузки всей таблицы.
+ * Тест без подписчиков выполняется первым: подписки остальных тестов остаются открытыми.
+ */
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+@WithMockUser(roles = "ADMIN")
+class UserEventBroadcasterTest {
+
+    private static final long TIMEOUT_MILLIS = 5000;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private UserEventBroadcaster userEventBroadcaster;
+
+    @Test
+    @Order(1)
+    void reconnectAfterChangeWithoutSubscribersReceivesReset() throws Exception {
+        assertThat(userEventBroadcaster.getSubscriberCount()).isZero();
+        String lastEventId = userEventBroadcaster.currentEventId();
+
+        userService.addUserWithRoles(new UserDto(null, "sse", "offline", 30, "sse-offline@mail.ru", "password",
+                Set.of(new RoleDto("USER"))));
+
+        MockHttpServletResponse response = mockMvc.perform(get("/api/admin/users/events")
+                        .header("Last-Event-ID", lastEventId))
+                .andExpect(request().asyncStarted())
+                .andReturn().getResponse();
+        awaitContent(response, "event:reset");
+    }
+
+    @Test
+    void subscriberReceivesUpsertAndDeleteDeltas() throws Exception {
+        MockHttpServletResponse response = mockMvc.perform(get("/api/admin/users/events"))
+                .andExpect(request().asyncStarted())
+                .andReturn().getResponse();
+        awaitContent(response, "event:ready");
+
+        userService.addUserWithRoles(new UserDto(null, "sse", "user", 30, "sse-user@mail.ru", "password",
+                Set.of(new RoleDto("USER"))));
+        awaitContent(response, "\"email\":\"sse-user@mail.ru\"");
+        assertThat(response.getContentAsString()).contains("event:upsert");
+
+        Long id = userService.findByEmail("sse-user@mail.ru").getId();
+        userService.delete(id);
+        awaitContent(response, "event:delete\ndata:{\"id\":" + id + "}");
+    }
+
+    @Test
+    void reconnectAfterMissedEventsReceivesReset() throws Exception {
+        MockHttpServletResponse response = mockMvc.perform(get("/api/admin/users/events")
+                        .header("Last-Event-ID", "stale-0"))
+                .andExpect(request().asyncStarted())
+                .andReturn().getResponse();
+
+        awaitContent(response, "event:reset");
+    }
+
+    private static void awaitContent(MockHttpServletResponse response, String expected) throws Exception {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        while (!response.getContentAsString().contains(expected) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        assertThat(response.getContentAsString()).contains(expected);
+    }
+
+}
@@ -0,0 +1,81 @@
+package ru.kata.spring.boot_security.service;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import ru.kata.spring.boot_security.dto.AuditRecordView;
+import ru.kata.spring.boot_security.dto.RoleDto;
+import ru.kata.spring.boot_security.dto.UserDto;
+import ru.kata.spring.boot_security.event.UserChangedEvent;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+
+/**
+ * Проверяет, что изменения пользователей попадают в журнал аудита после коммита,
+ * с автором изменения, и читаются через /api/admin/audit страницами от новых к старым.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+@WithMockUser(username = "auditor@mail.ru", roles = "ADMIN")
+class AuditLogWriterTest {
+
+    private static final long TIMEOUT_MILLIS = 5000;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private UserService userService;
+
+    @Test
+    void userChangesAreWrittenBehindAndPagedNewestFirst() throws Exception {
+        userService.addUserWithRoles(new UserDto(null, "audit", "user", 30, "audit-user@mail.ru", "password",
+                Set.of(new RoleDto("USER"))));
+        Long id = userService.findByEmail("audit-user@mail.ru").getId();
+        userService.updateUserWithRoles(new UserDto(id, "audit", "user", 31, "audit-renamed@mail.ru", null,
+                Set.of(new RoleDto("USER"))));
+        userService.delete(id);
+
+        List<AuditRecordView> records = awaitRecords("/api/admin/audit?userId=" + id, 3);
+        assertThat(records).extracting(AuditRecordView::action).containsExactly(
+                UserChangedEvent.Type.DELETED, UserChangedEvent.Type.UPDATED, UserChangedEvent.Type.CREATED);
+        assertThat(records).extracting(AuditRecordView::actor).containsOnly("auditor@mail.ru");
+        assertThat(records.get(1).previousEmail()).isEqualTo("audit-user@mail.ru");
+
+        List<AuditRecordView> nextPage = read("/api/admin/audit?userId=" + id
+                + "&limit=2&beforeId=" + records.get(0).id());
+        assertThat(nextPage).extracting(AuditRecordView::action).containsExactly(
+                UserChangedEvent.Type.UPDATED, UserChangedEvent.Type.CREATED);
+    }
+
+    private List<AuditRecordView> awaitRecords(String url, int count) throws Exception {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        List<AuditRecordView> records = read(url);
+        while (records.size() < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+            records = read(url);
+        }
+        return records;
+    }
+
+    private List<AuditRecordView> read(String url) throws Exception {
+        String json = mockMvc.perform(get(url)).andReturn().getResponse().getContentAsString();
+        return objectMapper.readValue(json, new TypeReference<>() {
+        });
+    }
+
+}
@@ -0,0 +1,93 @@
+package ru.kata.spring.boot_security.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Проверяет хэширование паролей в ограниченном пуле: результат, отказ при заполненной очереди
+ * и правила, когда пароль хэшируется заново.
+ */
+class PasswordHasherTest {
+
+    private final PasswordEncoder passwordEncoder = new BCryptPasswordEncoder(4);
+
+    @Test
+    void encodesPasswordsInOrder() {
+        PasswordHasher hasher = new PasswordHasher(passwordEncoder, 2, 10, Duration.ofSeconds(1));
+        try {
+            List<String> hashes = hasher.encodeAll(List.of("first", "second"));
+
+            assertThat(passwordEncoder.matches("first", hashes.get(0))).isTrue();
+            assertThat(passwordEncoder.matches("second", hashes.get(1))).isTrue();
+            assertThat(passwordEncoder.matches("third", hasher.encode("third"))).isTrue();
+            assertThat(hasher.getEncodedCount()).isEqualTo(3);
+        } finally {
+            hasher.shutdown();
+        }
+    }
+
+    @Test
+    void rejectsWhenQueueStaysFull() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        PasswordEncoder blockingEncoder = new PasswordEncoder() {
+            @Override
+            public String encode(CharSequence rawPassword) {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return rawPassword.toString();
+            }
+
+            @Override
+            public boolean matches(CharSequence rawPassword, String encodedPassword) {
+                return rawPassword.toString().equals(encodedPassword);
+            }
+        };
+        PasswordHasher hasher = new PasswordHasher(blockingEncoder, 1, 1, Duration.ofMillis(50));
+        try {
+            CompletableFuture<String> running = CompletableFuture.supplyAsync(() -> hasher.encode("running"));
+            CompletableFuture<String> queued = CompletableFuture.supplyAsync(() -> hasher.encode("queued"));
+            while (hasher.getActiveCount() < 1 || hasher.getQueueSize() < 1) {
+                Thread.sleep(5);
+            }
+
+            assertThatThrownBy(() -> hasher.encode("rejected")).isInstanceOf(RejectedExecutionException.class);
+            assertThat(hasher.getRejectedCount()).isEqualTo(1);
+
+            release.countDown();
+            assertThat(running.get()).isEqualTo("running");
+            assertThat(queued.get()).isEqualTo("queued");
+        } finally {
+            release.countDown();
+            hasher.shutdown();
+        }
+    }
+
+    @Test
+    void blankOrUnchangedPasswordKeepsHash() {
+        PasswordHasher hasher = new PasswordHasher(passwordEncoder, 1, 1, Duration.ofSeconds(1));
+        try {
+            String hash = passwordEncoder.encode("secret");
+
+            assertThat(hasher.isNewPassword(null, hash)).isFalse();
+            assertThat(hasher.isNewPassword("  ", hash)).isFalse();
+            assertThat(hasher.isNewPassword(hash, hash)).isFalse();
+            assertThat(hasher.isNewPassword("secret", hash)).isTrue();
+        } finally {
+            hasher.shutdown();
+        }
+    }
+
+}
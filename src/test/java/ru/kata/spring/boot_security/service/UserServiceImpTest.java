@@ -0,0 +1,273 @@
+package ru.kata.spring.boot_security.service;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.kata.spring.boot_security.dto.RoleDto;
+import ru.kata.spring.boot_security.dto.UserDto;
+import ru.kata.spring.boot_security.dto.UserPatchDto;
+import ru.kata.spring.boot_security.dto.UserSearchFilter;
+import ru.kata.spring.boot_security.dto.UserView;
+import ru.kata.spring.boot_security.model.Role;
+import ru.kata.spring.boot_security.model.User;
+import ru.kata.spring.boot_security.repository.RoleRepository;
+import ru.kata.spring.boot_security.repository.UserRepository;
+
+import javax.persistence.EntityManagerFactory;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Проверяет, что чтение пользователей вместе с ролями выполняет
+ * постоянное количество SQL-запросов независимо от числа пользователей.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+class UserServiceImpTest {
+
+    private static final int USERS_COUNT = 50;
+
+    @Autowired
+    private UserServiceImp userService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private RoleRepository roleRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private DeletedUserPurger deletedUserPurger;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private Statistics statistics;
+
+    @BeforeEach
+    void setUp() {
+        if (userRepository.findByEmail("n-plus-one-0@mail.ru") == null) {
+            List<User> users = new ArrayList<>();
+            for (int i = 0; i < USERS_COUNT; i++) {
+                User user = new User("first" + i, "last" + i, "n-plus-one-" + i + "@mail.ru", 20, "password");
+                user.setRoles(Set.of(roleRepository.findByName("ROLE_USER")));
+                users.add(user);
+            }
+            userRepository.saveAll(users);
+        }
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    @Test
+    void getAllUsersWithRolesRunsTwoQueriesPerPage() {
+        int rolesCount = transactionTemplate.execute(status ->
+                userService.getAllUsersWithRoles(0L, 100).stream()
+                        .mapToInt(user -> user.roles().size())
+                        .sum());
+
+        assertThat(rolesCount).isGreaterThanOrEqualTo(USERS_COUNT);
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(2);
+    }
+
+    @Test
+    void searchUsersRunsOneIndexRangeQueryPerPrefixColumn() {
+        List<UserView> users = userService.searchUsers(new UserSearchFilter("first1", "USER", 20, 20), 0L, 100);
+
+        assertThat(users).extracting(UserView::firstname)
+                .containsExactly("first1", "first10", "first11", "first12", "first13",
+                        "first14", "first15", "first16", "first17", "first18", "first19");
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(4);
+
+        statistics.clear();
+        List<UserView> firstPage = userService.searchUsers(new UserSearchFilter(null, "USER", 20, 20), 0L, 3);
+        assertThat(firstPage).hasSize(3).allSatisfy(user -> assertThat(user.age()).isEqualTo(20));
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(2);
+        assertThat(userService.searchUsers(new UserSearchFilter("first1", null, null, null),
+                users.get(4).id(), 3))
+                .extracting(UserView::firstname)
+                .containsExactly("first14", "first15", "first16");
+
+        assertThat(userService.searchUsers(new UserSearchFilter("n-plus-one-4", null, null, null), 0L, 100))
+                .extracting(UserView::email)
+                .contains("n-plus-one-4@mail.ru", "n-plus-one-49@mail.ru");
+        assertThat(userService.searchUsers(new UserSearchFilter("first%", null, null, null), 0L, 100)).isEmpty();
+        assertThat(userService.searchUsers(new UserSearchFilter("first1", "ADMIN", null, null), 0L, 100)).isEmpty();
+        assertThat(userService.searchUsers(new UserSearchFilter("first1", null, 21, null), 0L, 100)).isEmpty();
+    }
+
+    @Test
+    void streamAllUsersWithRolesRunsSingleQuery() {
+        List<String> emails = new ArrayList<>();
+        transactionTemplate.executeWithoutResult(status ->
+                userService.streamAllUsersWithRoles(user -> emails.add(user.email())));
+
+        assertThat(emails).hasSizeGreaterThanOrEqualTo(USERS_COUNT).doesNotHaveDuplicates();
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+    }
+
+    @Test
+    void findByEmailIsServedFromSecondLevelCache() {
+        entityManagerFactory.unwrap(SessionFactory.class).getCache().evictAllRegions();
+        statistics.clear();
+
+        assertThat(userService.findViewByEmail("admin@mail.ru").roles()).containsExactly("ADMIN", "USER");
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(2);
+        statistics.clear();
+
+        assertThat(userService.findViewByEmail("admin@mail.ru").roles()).containsExactly("ADMIN", "USER");
+        assertThat(userService.loadUserByUsername("admin@mail.ru").getAuthorities())
+                .extracting(GrantedAuthority::getAuthority)
+                .containsExactlyInAnyOrder("ROLE_ADMIN", "ROLE_USER");
+        assertThat(statistics.getPrepareStatementCount()).isZero();
+        assertThat(statistics.getNaturalIdCacheHitCount()).isEqualTo(2);
+        assertThat(statistics.getSecondLevelCacheHitCount()).isGreaterThanOrEqualTo(2);
+    }
+
+    @Test
+    void secondLevelCacheFollowsUserChanges() {
+        userService.addUserWithRoles(new UserDto(null, "cached", "user", 30, "cached-user@mail.ru", "password",
+                Set.of(new RoleDto("USER"))));
+        UserView created = userService.findViewByEmail("cached-user@mail.ru");
+
+        userService.updateUserWithRoles(new UserDto(created.id(), "cached", "user", 31, "cached-renamed@mail.ru",
+                null, Set.of(new RoleDto("USER"), new RoleDto("ADMIN"))));
+        statistics.clear();
+
+        assertThat(userService.findByEmail("cached-user@mail.ru")).isNull();
+        UserView renamed = userService.findViewByEmail("cached-renamed@mail.ru");
+        assertThat(renamed.age()).isEqualTo(31);
+        assertThat(renamed.roles()).containsExactly("ADMIN", "USER");
+
+        UserView patched = userService.patchUser(created.id(),
+                new UserPatchDto("patched", null, null, null, null, null, renamed.version()));
+        statistics.clear();
+        assertThat(userService.findViewByEmail("cached-renamed@mail.ru")).isEqualTo(patched);
+        assertThat(statistics.getPrepareStatementCount()).isZero();
+
+        userService.delete(created.id());
+        assertThat(userService.findViewByEmail("cached-renamed@mail.ru")).isNull();
+    }
+
+    @Test
+    void addUserWithRolesDoesNotQueryRoles() {
+        UserDto userDto = new UserDto(null, "role", "registry", 30, "role-registry@mail.ru", "password",
+                Set.of(new RoleDto("ADMIN"), new RoleDto("User")));
+
+        userService.addUserWithRoles(userDto);
+
+        assertThat(statistics.getQueryExecutionCount()).isZero();
+        assertThat(statistics.getEntityStatistics(Role.class.getName()).getLoadCount()).isZero();
+        assertThat(userService.loadUserByUsername("role-registry@mail.ru").getAuthorities())
+                .extracting(GrantedAuthority::getAuthority)
+                .containsExactlyInAnyOrder("ROLE_ADMIN", "ROLE_USER");
+    }
+
+    @Test
+    void patchUserUpdatesChangedColumnsAndRejectsStaleVersion() {
+        userService.addUserWithRoles(new UserDto(null, "patch", "user", 30, "patch-user@mail.ru", "password",
+                Set.of(new RoleDto("USER"))));
+        UserView created = userService.findViewByEmail("patch-user@mail.ru");
+        statistics.clear();
+
+        UserView patched = userService.patchUser(created.id(), new UserPatchDto(null, null, 31, null, null,
+                Set.of(new RoleDto("USER"), new RoleDto("ADMIN")), created.version()));
+
+        assertThat(patched.age()).isEqualTo(31);
+        assertThat(patched.firstname()).isEqualTo("patch");
+        assertThat(patched.roles()).containsExactly("ADMIN", "USER");
+        assertThat(patched.version()).isEqualTo(created.version() + 1);
+        assertThat(statistics.getCollectionRecreateCount()).isZero();
+        assertThat(statistics.getCollectionUpdateCount()).isEqualTo(1);
+
+        assertThatThrownBy(() -> userService.patchUser(created.id(), new UserPatchDto("stale", null, null, null,
+                null, null, created.version())))
+                .isInstanceOf(ObjectOptimisticLockingFailureException.class);
+        assertThat(userService.findViewByEmail("patch-user@mail.ru").firstname()).isEqualTo("patch");
+    }
+
+    @Test
+    void updateWithBlankOrUnchangedPasswordKeepsHash() {
+        userService.addUserWithRoles(new UserDto(null, "hash", "user", 30, "hash-user@mail.ru", "password",
+                Set.of(new RoleDto("USER"))));
+        User created = userService.findByEmail("hash-user@mail.ru");
+        String hash = created.getPassword();
+
+        userService.updateUserWithRoles(new UserDto(created.getId(), "hash", "blank", 30, "hash-user@mail.ru", "",
+                Set.of(new RoleDto("USER"))));
+        userService.updateUserWithRoles(new UserDto(created.getId(), "hash", "echo", 30, "hash-user@mail.ru", hash,
+                Set.of(new RoleDto("USER"))));
+        assertThat(userService.findByEmail("hash-user@mail.ru").getPassword()).isEqualTo(hash);
+
+        userService.updateUserWithRoles(new UserDto(created.getId(), "hash", "changed", 30, "hash-user@mail.ru",
+                "new-password", Set.of(new RoleDto("USER"))));
+        assertThat(userService.findByEmail("hash-user@mail.ru").getPassword()).isNotEqualTo(hash);
+    }
+
+    @Test
+    void patchUserRejectsEmailOfAnotherUser() {
+        userService.addUserWithRoles(new UserDto(null, "patch", "email", 30, "patch-email@mail.ru", "password",
+                Set.of(new RoleDto("USER"))));
+        UserView created = userService.findViewByEmail("patch-email@mail.ru");
+
+        assertThatThrownBy(() -> userService.patchUser(created.id(), new UserPatchDto(null, null, null,
+                "user@mail.ru", null, null, created.version())))
+                .isInstanceOf(DataIntegrityViolationException.class);
+        assertThat(userService.findViewByEmail("patch-email@mail.ru").version()).isEqualTo(created.version());
+        assertThat(userService.findViewByEmail("user@mail.ru").id()).isNotEqualTo(created.id());
+    }
+
+    @Test
+    void deleteAllMarksUsersDeletedAndPurgerRemovesThemLater() throws InterruptedException {
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            userService.addUserWithRoles(new UserDto(null, "soft", "delete", 30, "soft-delete-" + i + "@mail.ru",
+                    "password", Set.of(new RoleDto("USER"))));
+            ids.add(userService.findByEmail("soft-delete-" + i + "@mail.ru").getId());
+        }
+        statistics.clear();
+
+        assertThat(userService.deleteAll(List.of(ids.get(0), ids.get(1), ids.get(1), -1L))).isEqualTo(2);
+
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(2);
+        assertThat(userService.findViewsByIds(ids)).extracting(UserView::id).containsExactly(ids.get(2));
+        assertThat(userService.searchUsers(new UserSearchFilter("soft-delete", null, null, null), 0L, 100))
+                .hasSize(1);
+        assertThat(countRows("select count(*) from users_roles where users_id in (?, ?)", ids.get(0), ids.get(1)))
+                .isEqualTo(2);
+
+        userService.addUserWithRoles(new UserDto(null, "soft", "again", 30, "soft-delete-0@mail.ru",
+                "password", Set.of(new RoleDto("USER"))));
+        assertThat(userService.findViewByEmail("soft-delete-0@mail.ru").lastname()).isEqualTo("again");
+
+        assertThat(deletedUserPurger.purge(Instant.now().plusSeconds(1))).isGreaterThanOrEqualTo(2);
+        assertThat(countRows("select count(*) from users where id in (?, ?)", ids.get(0), ids.get(1))).isZero();
+        assertThat(countRows("select count(*) from users_roles where users_id in (?, ?)", ids.get(0), ids.get(1)))
+                .isZero();
+    }
+
+    private int countRows(String sql, Object... args) {
+        return jdbcTemplate.queryForObject(sql, Integer.class, args);
+    }
+
+}